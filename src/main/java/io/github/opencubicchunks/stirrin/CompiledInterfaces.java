@@ -0,0 +1,121 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.util.MethodBindingUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Reads the methods of interfaces declared in the source sets from their compiled classes, which is much cheaper than
+ * resolving them through JDT bindings. A class is only used if it was compiled after its source file was last modified.
+ *
+ * JDT provides the parameter names of every method, so classes are only used if they were compiled with
+ * {@code -parameters}, unless JDT can't provide parameter names either.
+ *
+ * This class must not depend on Gradle, see {@link MixinExtractor}.
+ */
+public class CompiledInterfaces {
+    private final Collection<Path> classesDirectories;
+    private final Collection<Path> sourceSetDirectories;
+
+    public CompiledInterfaces(Collection<Path> classesDirectories, Collection<Path> sourceSetDirectories) {
+        this.classesDirectories = classesDirectories;
+        this.sourceSetDirectories = sourceSetDirectories;
+    }
+
+    /**
+     * @param internalName The internal name of the interface
+     * @return The methods declared by the interface, or null if there is no up-to-date compiled class for it, or the
+     * class doesn't contain all the information JDT would provide
+     */
+    @Nullable
+    public List<MethodEntry> readMethods(String internalName) {
+        int nestedStart = internalName.indexOf('$');
+        String sourceName = (nestedStart < 0 ? internalName : internalName.substring(0, nestedStart)) + ".java";
+
+        try {
+            FileTime sourceModified = lastModified(sourceSetDirectories, sourceName);
+            if (sourceModified == null) { // not declared in the source sets
+                return null;
+            }
+            for (Path classesDirectory : classesDirectories) {
+                Path classFile = classesDirectory.resolve(internalName + ".class");
+                if (Files.isRegularFile(classFile)) {
+                    if (Files.getLastModifiedTime(classFile).compareTo(sourceModified) < 0) {
+                        return null;
+                    }
+                    try (InputStream inputStream = Files.newInputStream(classFile)) {
+                        return readMethods(new ClassReader(inputStream));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static List<MethodEntry> readMethods(ClassReader classReader) {
+        if ((classReader.getAccess() & ACC_INTERFACE) == 0) {
+            return null;
+        }
+        List<MethodEntry> methods = new ArrayList<>();
+        boolean[] complete = { true };
+        classReader.accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if ((access & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0 || name.charAt(0) == '<') { // not visible to JDT
+                    return null;
+                }
+                List<String> parameterNames = new ArrayList<>();
+                int parameterCount = Type.getArgumentTypes(descriptor).length;
+                return new MethodVisitor(ASM9) {
+                    @Override
+                    public void visitParameter(String parameterName, int parameterAccess) {
+                        parameterNames.add(parameterName);
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        List<String> names = parameterNames;
+                        if (names.size() != parameterCount || names.contains(null)) { // not compiled with -parameters
+                            if (MethodBindingUtils.parameterNamesError() == null) {
+                                complete[0] = false;
+                                return;
+                            }
+                            names = null; // JDT wouldn't provide them either
+                        }
+                        // JDT always provides a signature, which equals the descriptor for non-generic methods
+                        methods.add(new MethodEntry(name, descriptor, signature != null ? signature : descriptor, names,
+                            exceptions == null ? Collections.emptyList() : Arrays.asList(exceptions)));
+                    }
+                };
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        return complete[0] ? methods : null;
+    }
+
+    @Nullable
+    private static FileTime lastModified(Collection<Path> directories, String relativePath) throws IOException {
+        for (Path directory : directories) {
+            Path file = directory.resolve(relativePath);
+            if (Files.isRegularFile(file)) {
+                return Files.getLastModifiedTime(file);
+            }
+        }
+        return null;
+    }
+}
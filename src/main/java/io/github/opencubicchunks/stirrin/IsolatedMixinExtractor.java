@@ -0,0 +1,191 @@
+package io.github.opencubicchunks.stirrin;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+
+/**
+ * Runs {@link MixinExtractor} in a separate JVM with its own heap, so the JDT binding environment never lives in the
+ * Gradle daemon's heap. Only the compact {@link MixinFragment}s are sent back.
+ *
+ * Artifact transforms cannot use the Gradle Worker API, so a single worker process is started on demand and kept for
+ * the lifetime of the daemon, being reused by every later build. Requests are handled one at a time, so transforms
+ * running concurrently in the same daemon wait for each other to finish parsing. A worker which exits, or doesn't respond
+ * to a request in time, fails that request and is replaced by a new one for the next.
+ *
+ * The worker has no logging binding. Everything it needs to report is sent back as errors of the fragments, and
+ * anything printed to its stderr is forwarded to the daemon's log.
+ */
+public class IsolatedMixinExtractor {
+    /**
+     * How long a single request may take before the worker is assumed to be stuck, eg: thrashing at its heap limit
+     */
+    private static final long RESPONSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static Worker worker;
+    private static String workerMaxHeap;
+
+    /**
+     * @param maxHeap The maximum heap size of the worker process, eg: {@code 1g}. The worker is restarted if this changes.
+     */
+    public static synchronized Map<Path, MixinFragment> extract(String maxHeap, Set<Path> dependencies, Set<Path> sourceSetDirectories,
+                                                                Set<Path> classesDirectories, Set<Path> mixinSourceFiles, Set<String> mixinClasses) {
+        try {
+            ensureStarted(maxHeap);
+            return worker.exchange(RESPONSE_TIMEOUT_MILLIS, (requests, responses) -> {
+                ParserWorker.writeRequest(requests, dependencies, sourceSetDirectories, classesDirectories, mixinSourceFiles, mixinClasses);
+                return ParserWorker.readResponse(responses);
+            });
+        } catch (IOException e) {
+            stop(); // the process is in an unknown state, start a new one next time
+            throw new UncheckedIOException("Failed to communicate with Stirrin parser worker", e);
+        }
+    }
+
+    private static void ensureStarted(String maxHeap) throws IOException {
+        if (worker != null && worker.isAlive() && maxHeap.equals(workerMaxHeap)) {
+            return;
+        }
+        stop();
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        LOGGER.info("Starting Stirrin parser worker with {} max heap", maxHeap);
+        worker = new Worker(Arrays.asList(java, "-Xmx" + maxHeap, "-cp", workerClasspath(), ParserWorker.class.getName()));
+        workerMaxHeap = maxHeap;
+    }
+
+    private static void stop() {
+        if (worker != null) {
+            worker.destroy();
+            worker = null;
+        }
+    }
+
+    /**
+     * The worker runs with the same classpath as the plugin
+     */
+    private static String workerClasspath() {
+        Set<String> classpath = new LinkedHashSet<>();
+        ClassLoader classLoader = IsolatedMixinExtractor.class.getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                classpath.add(toPath(url));
+            }
+        }
+        for (Class<?> clazz : new Class<?>[] { IsolatedMixinExtractor.class, org.eclipse.jdt.core.dom.ASTParser.class,
+            org.objectweb.asm.ClassReader.class }) {
+            CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                classpath.add(toPath(codeSource.getLocation()));
+            }
+        }
+        return classpath.stream().collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private static String toPath(URL url) {
+        try {
+            return Paths.get(url.toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid classpath entry " + url, e);
+        }
+    }
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(IsolatedMixinExtractor::stop, "Stirrin parser worker shutdown"));
+    }
+
+    /**
+     * A running worker process. The process is killed if an exchange with it doesn't complete in time, which ends the
+     * exchange with an {@link IOException}, as does the process exiting.
+     */
+    static final class Worker {
+        private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stirrin parser worker watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final Process process;
+        private final DataOutputStream requests;
+        private final DataInputStream responses;
+        private volatile boolean timedOut;
+
+        Worker(List<String> command) throws IOException {
+            this.process = new ProcessBuilder(command).start();
+            this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+            Thread errorPump = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        LOGGER.info("[stirrin parser worker] {}", line);
+                    }
+                } catch (IOException ignored) { }
+            }, "Stirrin parser worker stderr");
+            errorPump.setDaemon(true);
+            errorPump.start();
+        }
+
+        boolean isAlive() {
+            return !timedOut && process.isAlive();
+        }
+
+        /**
+         * Sends a request and reads its response, killing the process if that takes longer than the timeout
+         *
+         * @throws IOException If the process timed out or exited, after which it must not be used again
+         */
+        <T> T exchange(long timeoutMillis, Exchange<T> exchange) throws IOException {
+            ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+                timedOut = true;
+                process.destroyForcibly();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                return exchange.run(requests, responses);
+            } catch (IOException e) {
+                if (timedOut) {
+                    throw new IOException("Stirrin parser worker did not respond within " + timeoutMillis + " ms and was killed", e);
+                }
+                if (hasExited()) {
+                    throw new IOException("Stirrin parser worker exited unexpectedly with code " + process.exitValue(), e);
+                }
+                throw e;
+            } finally {
+                watchdog.cancel(false);
+            }
+        }
+
+        /**
+         * The output of the process closes slightly before it can be seen to have exited
+         */
+        private boolean hasExited() {
+            try {
+                return process.waitFor(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return !process.isAlive();
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+    }
+
+    interface Exchange<T> {
+        T run(DataOutputStream requests, DataInputStream responses) throws IOException;
+    }
+}
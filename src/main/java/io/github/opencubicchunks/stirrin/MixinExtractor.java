@@ -0,0 +1,194 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import org.eclipse.jdt.core.dom.*;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static io.github.opencubicchunks.stirrin.util.MethodBindingUtils.*;
+
+/**
+ * Extracts a {@link MixinModel} from mixin source files using JDT.
+ *
+ * This class must not depend on Gradle, as it also runs in an isolated worker process, see {@link ParserWorker}.
+ */
+public class MixinExtractor {
+    /**
+     * Bump when the model extracted from the same sources changes, to invalidate stored models, see {@link MixinModelStore}
+     */
+    static final int EXTRACTOR_VERSION = 2;
+
+    /**
+     * Parses the mixin source files, and extracts the interfaces each mixin applies to its targets. The model and errors
+     * of each source file are kept separate, see {@link MixinFragment#merge}.
+     *
+     * @param compiledInterfaces Compiled interfaces to read methods from instead of resolving them, if up-to-date
+     * @param mixinSourceFiles Source files to parse
+     * @param mixinClasses Binary names of the mixin classes declared in mixin configs. Other types in the source files are ignored.
+     * @return A fragment for every source file, keyed by its absolute path. Its errors contain a message for each
+     * interface or method that could not be resolved.
+     */
+    public static Map<Path, MixinFragment> extractEach(Parser parser, @Nullable CompiledInterfaces compiledInterfaces, Set<Path> mixinSourceFiles,
+                                                       Set<String> mixinClasses) {
+        // Errors not specific to a file are reported with every fragment, and only logged once when they are merged. Nothing
+        // logged here would be seen when running in the isolated parser process.
+        List<String> environmentErrors = new ArrayList<>(parser.getErrors());
+        String parameterNamesError = parameterNamesError();
+        if (parameterNamesError != null) {
+            environmentErrors.add(parameterNamesError);
+        }
+
+        Map<Path, MixinModel.Builder> builders = new LinkedHashMap<>();
+        Map<Path, List<String>> errors = new HashMap<>();
+        for (Path mixinSourceFile : mixinSourceFiles) {
+            builders.put(mixinSourceFile.toAbsolutePath(), new MixinModel.Builder());
+            errors.put(mixinSourceFile.toAbsolutePath(), new ArrayList<>(environmentErrors));
+        }
+
+        FileASTRequestor requestor = new FileASTRequestor() {
+            @Override public void acceptAST(String sourceFilePath, CompilationUnit cu) {
+                Path path = Paths.get(sourceFilePath);
+                for (Object type : cu.types()) {
+                    getInterfacesFromType((AbstractTypeDeclaration) type, builders.get(path), compiledInterfaces, mixinClasses, errors.get(path)::add);
+                }
+            }
+        };
+
+        try {
+            String[] sourcePaths = builders.keySet().stream().map(Path::toString).toArray(String[]::new);
+            parser.getParser().createASTs(sourcePaths, null, new String[0], requestor, null);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+
+        Map<Path, MixinFragment> fragments = new LinkedHashMap<>();
+        builders.forEach((path, builder) -> fragments.put(path, new MixinFragment(builder.build(), errors.get(path))));
+        return fragments;
+    }
+
+    private static void getInterfacesFromType(AbstractTypeDeclaration abstractTypeDecl, MixinModel.Builder mixinInterfacesByTarget,
+                                              @Nullable CompiledInterfaces compiledInterfaces, Set<String> mixinClasses, Consumer<String> errorReporter) {
+        if (abstractTypeDecl instanceof TypeDeclaration) {
+            TypeDeclaration typeDecl = (TypeDeclaration) abstractTypeDecl;
+
+            if (!mixinClasses.contains(typeDecl.resolveBinding().getBinaryName())) {
+                return;
+            }
+
+            Set<String> mixinTargets = getMixinTargetsForType(typeDecl);
+            if (!mixinTargets.isEmpty()) { // this type is a mixin and has targets
+                Map<String, Collection<MethodEntry>> interfaceMethodsFromType = getInterfaceMethodsFromType(typeDecl, mixinInterfacesByTarget, compiledInterfaces, errorReporter);
+
+                interfaceMethodsFromType.forEach((itf, methods) ->
+                        methods.forEach(method -> mixinInterfacesByTarget.addInterfaceMethod(itf, method)));
+                for (String mixinTarget : mixinTargets) {
+                    String targetName = mixinTarget.replace('.', '/');
+                    interfaceMethodsFromType.keySet().forEach(itf -> mixinInterfacesByTarget.addTargetInterface(targetName, itf));
+                }
+            }
+
+            for (TypeDeclaration innerType : typeDecl.getTypes()) {
+                getInterfacesFromType(innerType, mixinInterfacesByTarget, compiledInterfaces, mixinClasses, errorReporter);
+            }
+        }
+    }
+
+    private static Map<String, Collection<MethodEntry>> getInterfaceMethodsFromType(TypeDeclaration typeDecl, MixinModel.Builder mixinInterfacesByTarget,
+                                                                                    @Nullable CompiledInterfaces compiledInterfaces,
+                                                                                    Consumer<String> errorReporter) {
+        Map<String, Collection<MethodEntry>> methodsByInterface = new HashMap<>();
+        List<?> interfaceTypes = typeDecl.superInterfaceTypes();
+        for (Object anInterface : interfaceTypes) {
+            if (anInterface instanceof SimpleType) { // TODO: handle parameterized interfaces
+                ITypeBinding itf = ((SimpleType) anInterface).resolveBinding();
+
+                if (itf == null || itf.getBinaryName() == null) {
+                    errorReporter.accept("Cannot resolve interface: " + ((SimpleType) anInterface).getName().toString() + " for Mixin: " + typeDecl.resolveBinding().getQualifiedName());
+                    continue;
+                }
+
+                String itfName = itf.getBinaryName().replace('.', '/');
+                addSuperInterfaces(itf, mixinInterfacesByTarget, new HashSet<>());
+
+                List<MethodEntry> compiledMethods = compiledInterfaces == null ? null : compiledInterfaces.readMethods(itfName);
+                if (compiledMethods != null) {
+                    compiledMethods.forEach(method -> methodsByInterface.computeIfAbsent(itfName, t -> new ArrayList<>()).add(method));
+                    continue;
+                }
+
+                for (IMethodBinding method : itf.getDeclaredMethods()) {
+                    try {
+                        String methodDescriptor = createMethodDescriptor(method);
+                        String methodSignature = createMethodSignature(method);
+
+                        List<String> paramNames = getParamNames(method);
+                        List<String> exceptions = createExceptions(method, exception -> errorReporter.accept("Cannot resolve exception type: "
+                            + exception + " thrown by method: " + method + " for Interface: " + itf.getQualifiedName()
+                            + ", it is left out of the stub's throws clause"));
+
+                        methodsByInterface.computeIfAbsent(itfName, t -> new ArrayList<>()).add(
+                                new MethodEntry(method.getName(), methodDescriptor, methodSignature, paramNames, exceptions)
+                        );
+                    } catch (ClassNotFoundException e) {
+                        errorReporter.accept("Cannot resolve type in method: " + method + " for Interface: " + itf.getQualifiedName());
+                    }
+                }
+            }
+        }
+        return methodsByInterface;
+    }
+
+    /**
+     * Records the super-interfaces of the interface, and of all of its super-interfaces, so targets aren't given
+     * interfaces or stubs already implied by another interface
+     */
+    private static void addSuperInterfaces(ITypeBinding itf, MixinModel.Builder mixinInterfacesByTarget, Set<String> visited) {
+        String itfName = itf.getErasure().getBinaryName().replace('.', '/');
+        if (!visited.add(itfName)) {
+            return;
+        }
+        for (ITypeBinding superItf : itf.getInterfaces()) {
+            String superItfName = superItf.getErasure().getBinaryName();
+            if (superItfName == null) {
+                continue;
+            }
+            mixinInterfacesByTarget.addSuperInterface(itfName, superItfName.replace('.', '/'));
+            addSuperInterfaces(superItf, mixinInterfacesByTarget, visited);
+        }
+    }
+
+    private static Set<String> getMixinTargetsForType(TypeDeclaration typeDecl) {
+        Set<String> mixinTargets = new HashSet<>();
+        for (Object modifier : typeDecl.modifiers()) {
+            if (modifier instanceof SingleMemberAnnotation) {
+                SingleMemberAnnotation annotation = (SingleMemberAnnotation) modifier;
+                if (annotation.resolveTypeBinding().getQualifiedName().equals("org.spongepowered.asm.mixin.Mixin")) {
+                    Expression value = annotation.getValue();
+                    if (value instanceof TypeLiteral) {
+                        mixinTargets.add(value.resolveTypeBinding().getTypeArguments()[0].getBinaryName());
+                        break;
+                    } else if (value instanceof ArrayInitializer) {
+                        for (Object expression : ((ArrayInitializer) value).expressions()) {
+                            if (expression instanceof TypeLiteral) {
+                                mixinTargets.add(((TypeLiteral) expression).resolveTypeBinding().getBinaryName());
+                            } else if (expression instanceof StringLiteral) {
+                                mixinTargets.add(((StringLiteral) expression).getLiteralValue());
+                            }
+                        }
+                        break;
+                    } else if (value instanceof StringLiteral) {
+                        mixinTargets.add(((StringLiteral) value).getLiteralValue());
+                    } else {
+                        throw new RuntimeException("Unhandled mixin annotation expression");
+                    }
+                }
+            }
+        }
+        return mixinTargets;
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The part of the {@link MixinModel} extracted from a single mixin source file, together with the errors reported while
+ * extracting it. Fragments are extracted independently so that unchanged files don't need to be parsed again.
+ */
+public final class MixinFragment {
+    public final MixinModel model;
+    public final List<String> errors;
+
+    public MixinFragment(MixinModel model, List<String> errors) {
+        this.model = model;
+        this.errors = errors;
+    }
+
+    /**
+     * Merges the fragments into a single model, passing their errors to the error reporter. Errors reported by several
+     * fragments are only passed once.
+     */
+    public static MixinModel merge(Collection<MixinFragment> fragments, Consumer<String> errorReporter) {
+        MixinModel.Builder builder = new MixinModel.Builder();
+        Set<String> errors = new LinkedHashSet<>();
+        for (MixinFragment fragment : fragments) {
+            errors.addAll(fragment.errors);
+            builder.addAll(fragment.model);
+        }
+        errors.forEach(errorReporter);
+        return builder.build();
+    }
+}
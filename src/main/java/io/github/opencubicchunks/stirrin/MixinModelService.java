@@ -0,0 +1,243 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Daemon-scoped holder of the {@link MixinFragment} of every mixin source file, kept up to date in the background.
+ *
+ * Each service watches the source set directories it was created for. When files change, the changed mixins are
+ * re-parsed on a background thread, so the model is usually already computed when the transform asks for it. A mixin's
+ * fragment is reused while its content is unchanged, and every fragment is discarded when any other source file or the
+ * ABI of a dependency changes, as the types they resolve against may have changed.
+ */
+public final class MixinModelService implements Closeable {
+    private static final int MAX_SERVICES = 4;
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private static final Map<List<Object>, MixinModelService> SERVICES = new LinkedHashMap<List<Object>, MixinModelService>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<List<Object>, MixinModelService> eldest) {
+            if (size() > MAX_SERVICES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final Set<Path> sourceSetDirectories;
+    private final Function<Set<Path>, Map<Path, MixinFragment>> extractor;
+    private final WatchService watchService;
+
+    // guarded by this
+    private Set<Path> mixinSourceFiles = Collections.emptySet();
+    private Map<Path, String> dependencyFingerprints = Collections.emptyMap();
+    private String environmentStamp;
+    private final Map<Path, String> fragmentHashes = new HashMap<>();
+    private final Map<Path, MixinFragment> fragments = new HashMap<>();
+
+    private MixinModelService(Set<Path> sourceSetDirectories, Function<Set<Path>, Map<Path, MixinFragment>> extractor) throws IOException {
+        this.sourceSetDirectories = Set.copyOf(sourceSetDirectories);
+        this.extractor = extractor;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path sourceSetDirectory : sourceSetDirectories) {
+            registerAll(sourceSetDirectory);
+        }
+
+        Thread watcher = new Thread(this::watch, "Stirrin mixin watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @param options Every other input the extractor depends on
+     * @return A key for {@link #get} which, unlike the supplied sets, can't be modified after the service is registered under it
+     */
+    public static List<Object> key(Set<Path> dependencies, Set<Path> sourceSetDirectories, Set<Path> classesDirectories, Set<String> mixinClasses,
+                                   Object... options) {
+        List<Object> key = new ArrayList<>();
+        key.add(List.copyOf(new TreeSet<>(dependencies)));
+        key.add(List.copyOf(new TreeSet<>(sourceSetDirectories)));
+        key.add(List.copyOf(new TreeSet<>(classesDirectories)));
+        key.add(List.copyOf(new TreeSet<>(mixinClasses)));
+        key.addAll(Arrays.asList(options));
+        return List.copyOf(key);
+    }
+
+    /**
+     * @param key Every input the extractor depends on, other than the mixin source files, see {@link #key}
+     * @return The service for the key, started if there isn't one yet
+     */
+    public static MixinModelService get(List<Object> key, Set<Path> sourceSetDirectories, Function<Set<Path>, Map<Path, MixinFragment>> extractor) {
+        synchronized (SERVICES) {
+            MixinModelService service = SERVICES.get(key);
+            if (service == null) {
+                try {
+                    service = new MixinModelService(sourceSetDirectories, extractor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to watch mixin sources", e);
+                }
+                SERVICES.put(key, service);
+            }
+            return service;
+        }
+    }
+
+    /**
+     * Waits for any background parse to finish, then parses whichever of the mixin source files are still out of date
+     *
+     * @param dependencyFingerprints Fingerprint of every dependency, also used by background parses until the next call
+     * @param errorReporter Receives the errors of every fragment
+     */
+    public synchronized MixinModel model(Set<Path> mixinSourceFiles, Map<Path, String> dependencyFingerprints, Consumer<String> errorReporter) {
+        this.mixinSourceFiles = mixinSourceFiles.stream().map(Path::toAbsolutePath).collect(Collectors.toSet());
+        this.dependencyFingerprints = new TreeMap<>(dependencyFingerprints);
+        try {
+            int parsed = refresh();
+            if (parsed == 0) {
+                LOGGER.info("Mixin model of {} mixins was already computed", this.mixinSourceFiles.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return MixinFragment.merge(this.mixinSourceFiles.stream().map(fragments::get).collect(Collectors.toList()), errorReporter);
+    }
+
+    /**
+     * Re-parses every mixin whose fragment is out of date
+     *
+     * @return The number of mixins parsed
+     */
+    private synchronized int refresh() throws IOException {
+        String stamp = environmentStamp();
+        if (!stamp.equals(environmentStamp)) {
+            fragmentHashes.clear();
+            fragments.clear();
+            environmentStamp = stamp;
+        }
+        fragments.keySet().retainAll(mixinSourceFiles);
+        fragmentHashes.keySet().retainAll(mixinSourceFiles);
+
+        Map<Path, String> staleHashes = new HashMap<>();
+        for (Path mixinSourceFile : mixinSourceFiles) {
+            String hash = Hashing.toHex(Hashing.hashFile(mixinSourceFile));
+            if (!hash.equals(fragmentHashes.get(mixinSourceFile))) {
+                staleHashes.put(mixinSourceFile, hash);
+            }
+        }
+        if (staleHashes.isEmpty()) {
+            return 0;
+        }
+
+        fragments.putAll(extractor.apply(staleHashes.keySet()));
+        fragmentHashes.putAll(staleHashes);
+        return staleHashes.size();
+    }
+
+    /**
+     * @return A stamp of the dependency fingerprints last passed to {@link #model} and of every source file which isn't a mixin
+     */
+    private String environmentStamp() throws IOException {
+        MessageDigest digest = Hashing.newDigest();
+        dependencyFingerprints.forEach((dependency, fingerprint) ->
+            digest.update((dependency + "\t" + fingerprint + "\n").getBytes(StandardCharsets.UTF_8)));
+        List<Path> files = new ArrayList<>();
+        for (Path sourceSetDirectory : sourceSetDirectories) {
+            if (Files.isDirectory(sourceSetDirectory)) {
+                try (Stream<Path> sources = Files.walk(sourceSetDirectory)) {
+                    sources.filter(Files::isRegularFile)
+                        .map(Path::toAbsolutePath)
+                        .filter(file -> !mixinSourceFiles.contains(file))
+                        .forEach(files::add);
+                }
+            }
+        }
+        files.sort(Comparator.naturalOrder());
+        for (Path file : files) {
+            digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+            if (Files.exists(file)) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                digest.update((attributes.size() + ":" + attributes.lastModifiedTime().toMillis()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return Hashing.toHex(digest.digest());
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                handle(watchService.take());
+                // wait for the burst of events from a save or checkout to finish
+                WatchKey key;
+                while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    handle(key);
+                }
+
+                long start = System.nanoTime();
+                try {
+                    int parsed = refresh();
+                    if (parsed > 0) {
+                        LOGGER.info("Pre-parsed {} changed mixins in {} ms", parsed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                } catch (IOException | RuntimeException e) { // the transform reports it when it parses again
+                    LOGGER.debug("Failed to pre-parse changed mixins", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // service closed
+        }
+    }
+
+    private void handle(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == ENTRY_CREATE) {
+                Path created = ((Path) key.watchable()).resolve((Path) event.context());
+                if (Files.isDirectory(created)) {
+                    try {
+                        registerAll(created);
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to watch {}", created, e);
+                    }
+                }
+            }
+        }
+        key.reset();
+    }
+
+    private void registerAll(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path dir : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close mixin watcher", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.FileHashes;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+
+/**
+ * Stores the mixin model of each source set, keyed by everything it was extracted from, so that a source set whose
+ * sources are unchanged isn't parsed again when the mixins of another source set change.
+ */
+public class MixinModelStore {
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_MODELS = 32;
+
+    private final Path directory;
+
+    public MixinModelStore(Path cacheDirectory) {
+        this.directory = cacheDirectory.resolve("models");
+    }
+
+    /**
+     * @param dependencyFingerprints Fingerprints of every dependency the source set was parsed against
+     * @param sourceSetDirectories Every source directory the source set was parsed against
+     * @param mixinClasses Binary names of the mixin classes declared in the source set
+     * @param fileHashes Hashes of the files already read by this run
+     * @return The key of the model extracted from the inputs
+     */
+    public static String key(Collection<String> dependencyFingerprints, Collection<Path> sourceSetDirectories, Collection<String> mixinClasses,
+                             FileHashes fileHashes) throws IOException {
+        MessageDigest digest = Hashing.newDigest();
+        digest.update((FORMAT_VERSION + ":" + MixinExtractor.EXTRACTOR_VERSION).getBytes(StandardCharsets.UTF_8));
+        new TreeSet<>(dependencyFingerprints).forEach(fingerprint -> digest.update(fingerprint.getBytes(StandardCharsets.UTF_8)));
+        new TreeSet<>(mixinClasses).forEach(mixinClass -> digest.update(mixinClass.concat("\n").getBytes(StandardCharsets.UTF_8)));
+        for (Path sourceSetDirectory : new TreeSet<>(sourceSetDirectories)) {
+            if (!Files.isDirectory(sourceSetDirectory)) {
+                continue;
+            }
+            List<Path> sources;
+            try (Stream<Path> files = Files.walk(sourceSetDirectory)) {
+                sources = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path source : sources) {
+                digest.update(sourceSetDirectory.relativize(source).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(fileHashes.hash(source));
+            }
+        }
+        return Hashing.toHex(digest.digest());
+    }
+
+    /**
+     * @return The model stored under the key together with the errors reported while extracting it, or null if there is none
+     */
+    @Nullable
+    public MixinFragment load(String key) {
+        Path stored = directory.resolve(key + ".bin");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stored)))) {
+            int errorCount = in.readInt();
+            List<String> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(in.readUTF());
+            }
+            MixinFragment fragment = new MixinFragment(MixinModel.read(in), errors);
+            Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+            return fragment;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read stored mixin model {}", stored, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a model under the key, keeping only the most recently used models
+     */
+    public void store(String key, MixinFragment fragment) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(fragment.errors.size());
+                for (String error : fragment.errors) {
+                    out.writeUTF(error);
+                }
+                fragment.model.write(out);
+            }
+            Files.move(temp, directory.resolve(key + ".bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            prune();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to store mixin model {}", key, e);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> models;
+        try (Stream<Path> files = Files.list(directory)) {
+            models = files.filter(file -> file.toString().endsWith(".bin"))
+                .sorted(Comparator.comparing(MixinModelStore::lastModified).reversed())
+                .collect(Collectors.toList());
+        }
+        for (Path model : models.subList(Math.min(MAX_MODELS, models.size()), models.size())) {
+            Files.deleteIfExists(model);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) { // deleted concurrently, prune it first
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -5,37 +5,46 @@ import org.eclipse.jdt.core.dom.ASTParser;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
-import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
 import static org.eclipse.jdt.core.dom.AST.JLS18;
 
 public class Parser {
     private final ASTParser parser;
+    private final List<String> errors = new ArrayList<>();
 
     private final Set<Path> dependencyClasses;
     private final Set<Path> projectClasses;
 
+    /**
+     * Paths which don't exist are ignored and reported in {@link #getErrors()}. The supplied sets are not modified.
+     */
     public Parser(Set<Path> dependencyClasses, Set<Path> projectClasses) {
         this.parser = ASTParser.newParser(JLS18);
 
-        validatePaths(dependencyClasses);
-        validatePaths(projectClasses);
-
-        this.dependencyClasses = dependencyClasses;
-        this.projectClasses = projectClasses;
+        this.dependencyClasses = existingPaths(dependencyClasses, errors);
+        this.projectClasses = existingPaths(projectClasses, errors);
     }
 
-    private static void validatePaths(Set<Path> paths) {
-        for (Iterator<Path> it = paths.iterator(); it.hasNext(); ) {
-            Path path = it.next();
-            if (!Files.exists(path)) {
-                LOGGER.error("Exception initialising Stirrin AST parser. Supplied path does not exist: \"" + path + "\" and will be ignored.");
-                it.remove();
+    private static Set<Path> existingPaths(Set<Path> paths, List<String> errors) {
+        Set<Path> existing = new LinkedHashSet<>();
+        for (Path path : paths) {
+            if (Files.exists(path)) {
+                existing.add(path);
+            } else {
+                errors.add("Exception initialising Stirrin AST parser. Supplied path does not exist: \"" + path + "\" and will be ignored.");
             }
         }
+        return existing;
+    }
+
+    /**
+     * Errors aren't logged here, as nothing would receive them in the isolated parser process, see {@link MixinExtractor#extractEach}
+     *
+     * @return Problems with the supplied paths
+     */
+    public List<String> getErrors() {
+        return errors;
     }
 
     public ASTParser getParser() {
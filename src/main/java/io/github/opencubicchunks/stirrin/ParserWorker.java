@@ -0,0 +1,143 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Entry point of the isolated parser process, see {@link IsolatedMixinExtractor}.
+ *
+ * Requests are read from stdin and a {@link MixinFragment} per source file written to stdout, one at a time, until stdin is closed. The
+ * JDT binding environment only ever lives in this process's heap. Anything else printed by the process goes to stderr.
+ */
+public class ParserWorker {
+    static final byte RESPONSE_OK = 0;
+    static final byte RESPONSE_FAILED = 1;
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err); // stdout is reserved for responses
+
+        serve(in, out, (dependencies, sourceSetDirectories, classesDirectories, mixinSourceFiles, mixinClasses) ->
+            MixinExtractor.extractEach(new Parser(dependencies, sourceSetDirectories),
+                new CompiledInterfaces(classesDirectories, sourceSetDirectories), mixinSourceFiles, mixinClasses));
+    }
+
+    /**
+     * Handles requests until the input is closed
+     */
+    static void serve(DataInputStream in, DataOutputStream out, Extractor extractor) throws IOException {
+        while (true) {
+            Set<Path> dependencies;
+            try {
+                dependencies = readPaths(in);
+            } catch (EOFException e) {
+                return; // the daemon has gone away
+            }
+            Set<Path> sourceSetDirectories = readPaths(in);
+            Set<Path> classesDirectories = readPaths(in);
+            Set<Path> mixinSourceFiles = readPaths(in);
+            Set<String> mixinClasses = readStrings(in);
+
+            Map<Path, MixinFragment> fragments;
+            try {
+                fragments = extractor.extract(dependencies, sourceSetDirectories, classesDirectories, mixinSourceFiles, mixinClasses);
+            } catch (Throwable t) {
+                StringWriter stackTrace = new StringWriter();
+                t.printStackTrace(new PrintWriter(stackTrace));
+                out.writeByte(RESPONSE_FAILED);
+                writeString(out, stackTrace.toString());
+                out.flush();
+                continue;
+            }
+
+            out.writeByte(RESPONSE_OK);
+            out.writeInt(fragments.size());
+            for (Map.Entry<Path, MixinFragment> entry : fragments.entrySet()) {
+                writeString(out, entry.getKey().toString());
+                writeStrings(out, entry.getValue().errors);
+                entry.getValue().model.write(out);
+            }
+            out.flush();
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, Set<Path> dependencies, Set<Path> sourceSetDirectories, Set<Path> classesDirectories,
+                             Set<Path> mixinSourceFiles, Set<String> mixinClasses) throws IOException {
+        writePaths(out, dependencies);
+        writePaths(out, sourceSetDirectories);
+        writePaths(out, classesDirectories);
+        writePaths(out, mixinSourceFiles);
+        writeStrings(out, mixinClasses);
+        out.flush();
+    }
+
+    /**
+     * @throws RuntimeException With the worker's stack trace, if extraction failed in the worker
+     */
+    static Map<Path, MixinFragment> readResponse(DataInputStream in) throws IOException {
+        if (in.readByte() != RESPONSE_OK) {
+            throw new RuntimeException("Stirrin parser worker failed to extract mixins:\n" + readString(in));
+        }
+        int count = in.readInt();
+        Map<Path, MixinFragment> fragments = new LinkedHashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            Path path = Paths.get(readString(in));
+            List<String> errors = new ArrayList<>(readStrings(in));
+            fragments.put(path, new MixinFragment(MixinModel.read(in), errors));
+        }
+        return fragments;
+    }
+
+    /**
+     * Writes a string of any length, unlike {@link DataOutput#writeUTF} which is limited to 64 KB, eg: for long stack traces
+     */
+    static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutput out, Iterable<String> strings) throws IOException {
+        List<String> list = new ArrayList<>();
+        strings.forEach(list::add);
+        out.writeInt(list.size());
+        for (String string : list) {
+            writeString(out, string);
+        }
+    }
+
+    static Set<String> readStrings(DataInput in) throws IOException {
+        int count = in.readInt();
+        Set<String> strings = new LinkedHashSet<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writePaths(DataOutput out, Set<Path> paths) throws IOException {
+        writeStrings(out, paths.stream().map(path -> path.toAbsolutePath().toString()).collect(Collectors.toList()));
+    }
+
+    private static Set<Path> readPaths(DataInput in) throws IOException {
+        return readStrings(in).stream().map(Paths::get).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    interface Extractor {
+        Map<Path, MixinFragment> extract(Set<Path> dependencies, Set<Path> sourceSetDirectories, Set<Path> classesDirectories,
+                                         Set<Path> mixinSourceFiles, Set<String> mixinClasses);
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.util.FileHashes;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+
+/**
+ * Records a fingerprint of every input of a transform run, grouped by kind of input, so the next run of the same
+ * transform can report exactly which inputs changed and how long re-running took.
+ *
+ * Runs are identified by the artifact name and the project, so different projects on the same machine don't compare
+ * against each other. Neither the identity nor the recorded entries contain the location of the build, so a checkout
+ * which was moved or cloned elsewhere is compared against the previous run of the same project. The inputs of the last
+ * successful run are stored in the cache directory, and a report listing every changed entry is written to the
+ * project's report directory.
+ */
+public final class RerunDiagnostics {
+    private static final int MAX_LOGGED_ENTRIES = 5;
+
+    private final Path directory;
+    private final Path reportFile;
+    private final String artifactName;
+    private final Path rootDirectory;
+    private final FileHashes fileHashes;
+    private final Map<String, Map<String, String>> fingerprints = new LinkedHashMap<>();
+
+    /**
+     * @param reportDirectory Directory the report of this run is written to, as {@code <artifactName>.txt}
+     * @param projectId Identifies the project independently of its location, eg: the root project name and project path
+     * @param rootDirectory Root directory of the build. Files within it are recorded relative to it
+     * @param fileHashes Hashes of the files already read by this run
+     */
+    public RerunDiagnostics(Path cacheDirectory, Path reportDirectory, String artifactName, String projectId, Path rootDirectory,
+                            FileHashes fileHashes) {
+        String projectKey = Hashing.toHex(Hashing.hash(projectId.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        this.directory = cacheDirectory.resolve("runs").resolve(artifactName + "-" + projectKey);
+        this.reportFile = reportDirectory.resolve(artifactName + ".txt");
+        this.artifactName = artifactName;
+        this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+        this.fileHashes = fileHashes;
+    }
+
+    public void record(String group, String entry, String fingerprint) {
+        fingerprints.computeIfAbsent(group, g -> new TreeMap<>()).put(entry, fingerprint);
+    }
+
+    /**
+     * Records a file, relative to the root directory if it is within it
+     */
+    public void record(String group, Path file, String fingerprint) {
+        Path absolute = file.toAbsolutePath().normalize();
+        String entry = absolute.startsWith(rootDirectory) ? rootDirectory.relativize(absolute).toString().replace('\\', '/') : absolute.toString();
+        record(group, entry, fingerprint);
+    }
+
+    /**
+     * Records every value with the same fingerprint, so only additions and removals are reported
+     */
+    public void recordValues(String group, Collection<String> values) {
+        fingerprints.computeIfAbsent(group, g -> new TreeMap<>());
+        values.forEach(value -> record(group, value, ""));
+    }
+
+    /**
+     * Records the content hash of every file, or every file within the directories, accepted by the filter
+     */
+    public void recordFiles(String group, Collection<Path> files, Predicate<Path> filter) {
+        fingerprints.computeIfAbsent(group, g -> new TreeMap<>());
+        for (Path file : files) {
+            if (Files.isDirectory(file)) {
+                try (Stream<Path> children = Files.walk(file)) {
+                    children.filter(Files::isRegularFile).filter(filter).forEach(child -> recordFile(group, child));
+                } catch (IOException e) {
+                    record(group, file, "unreadable");
+                }
+            } else {
+                recordFile(group, file);
+            }
+        }
+    }
+
+    private void recordFile(String group, Path file) {
+        try {
+            record(group, file, Hashing.toHex(fileHashes.hash(file)));
+        } catch (IOException e) {
+            record(group, file, "missing");
+        }
+    }
+
+    /**
+     * Logs which inputs changed since the last recorded run, writes the full report, and records this run's inputs.
+     * Must only be called once the run succeeded, so a failed run is reported against the last successful one.
+     *
+     * @param elapsedNanos How long this run took
+     */
+    public void report(long elapsedNanos) {
+        Map<String, Map<String, String>> previous = readPrevious();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+
+        List<String> summary = new ArrayList<>();
+        try {
+            Files.createDirectories(reportFile.getParent());
+            try (PrintWriter report = new PrintWriter(Files.newBufferedWriter(reportFile))) {
+                report.printf("Stirrin transform of %s took %d ms%n", artifactName, elapsedMillis);
+                if (previous == null) {
+                    report.println("No previous run was recorded");
+                    summary.add("no previous run was recorded");
+                } else {
+                    for (Map.Entry<String, Map<String, String>> group : fingerprints.entrySet()) {
+                        List<String> changes = diff(previous.getOrDefault(group.getKey(), Collections.emptyMap()), group.getValue());
+                        if (!changes.isEmpty()) {
+                            report.printf("%s: %d changed%n", group.getKey(), changes.size());
+                            changes.forEach(change -> report.printf("    %s%n", change));
+                            summary.add(group.getKey() + " (" + describe(changes) + ")");
+                        }
+                    }
+                }
+                if (summary.isEmpty()) {
+                    report.println("No recorded input changed. The previous output was likely removed from Gradle's transform cache");
+                    summary.add("no recorded input changed");
+                }
+            }
+            Files.createDirectories(directory);
+            writeInputs();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write Stirrin rerun report {}", reportFile, e);
+        }
+
+        if (previous == null) { // the first run on this machine, or after the cache was cleaned
+            LOGGER.info("Stirrin transform of {} ran in {} ms, no previous run was recorded", artifactName, elapsedMillis);
+        } else {
+            LOGGER.warn("Stirrin transform of {} re-ran in {} ms, because: {}. See {}", artifactName, elapsedMillis, String.join("; ", summary), reportFile);
+        }
+    }
+
+    private static List<String> diff(Map<String, String> previous, Map<String, String> current) {
+        List<String> changes = new ArrayList<>();
+        current.forEach((entry, fingerprint) -> {
+            String previousFingerprint = previous.get(entry);
+            if (previousFingerprint == null) {
+                changes.add("added " + entry);
+            } else if (!previousFingerprint.equals(fingerprint)) {
+                changes.add("changed " + entry + (fingerprint.isEmpty() ? "" : " (" + previousFingerprint + " -> " + fingerprint + ")"));
+            }
+        });
+        previous.keySet().stream().filter(entry -> !current.containsKey(entry)).forEach(entry -> changes.add("removed " + entry));
+        return changes;
+    }
+
+    private static String describe(List<String> changes) {
+        String described = changes.stream().limit(MAX_LOGGED_ENTRIES).collect(Collectors.joining(", "));
+        return changes.size() > MAX_LOGGED_ENTRIES ? described + ", and " + (changes.size() - MAX_LOGGED_ENTRIES) + " more" : described;
+    }
+
+    /**
+     * @return The fingerprints recorded by the previous run, or null if there was none
+     */
+    @Nullable
+    private Map<String, Map<String, String>> readPrevious() {
+        Path inputsFile = directory.resolve("inputs.txt");
+        if (!Files.isRegularFile(inputsFile)) {
+            return null;
+        }
+        Map<String, Map<String, String>> previous = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(inputsFile)) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length == 3) {
+                    previous.computeIfAbsent(parts[0], g -> new HashMap<>()).put(parts[1], parts[2]);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read previous Stirrin inputs {}", inputsFile, e);
+            return null;
+        }
+        return previous;
+    }
+
+    private void writeInputs() throws IOException {
+        Path temp = Files.createTempFile(directory, "inputs", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+            for (Map.Entry<String, Map<String, String>> group : fingerprints.entrySet()) {
+                for (Map.Entry<String, String> entry : group.getValue().entrySet()) {
+                    writer.write(group.getKey() + "\t" + entry.getKey() + "\t" + entry.getValue());
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(temp, directory.resolve("inputs.txt"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.ty.TargetPlan;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+
+/**
+ * User-level, content-addressed cache of stirred classes, shared by every project and worktree on the machine.
+ *
+ * Entries are keyed by the hash of the original class bytes and the hash of that class's {@link TargetPlan}, and hold
+ * the rewritten class bytes. The total size is bounded, evicting the least recently used entries first.
+ *
+ * The size of the cache is only measured by walking it when the bytes added by this JVM may have exceeded the bound, or
+ * when it was last measured long ago, to account for what other processes sharing the cache have added since.
+ */
+public class StirredClassCache {
+    private static final long REMEASURE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final Map<Path, SizeEstimate> SIZE_ESTIMATES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final long maxSize;
+    private final SizeEstimate sizeEstimate;
+
+    /**
+     * @param maxSize The maximum total size of cached classes in bytes
+     */
+    public StirredClassCache(Path cacheDirectory, long maxSize) {
+        this.directory = cacheDirectory.resolve("classes");
+        this.maxSize = maxSize;
+        this.sizeEstimate = SIZE_ESTIMATES.computeIfAbsent(directory.toAbsolutePath().normalize(), d -> new SizeEstimate());
+    }
+
+    /**
+     * @return The key of the class produced by applying the plan to the class bytes
+     */
+    public static String key(byte[] classBytes, MixinModel mixinModel, TargetPlan plan) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(StirrinTransformer.OUTPUT_VERSION);
+            out.write(Hashing.hash(classBytes));
+
+            out.writeInt(plan.interfaces.size());
+            for (String itf : plan.interfaces) {
+                out.writeUTF(itf);
+            }
+            out.writeInt(plan.methods.length);
+            for (int method : plan.methods) {
+                out.writeUTF(mixinModel.methodName(method));
+                out.writeUTF(mixinModel.methodDescriptor(method));
+                String signature = mixinModel.methodSignature(method);
+                out.writeUTF(signature == null ? "" : signature);
+                out.writeInt(mixinModel.methodParameterCount(method));
+                for (int i = 0; i < mixinModel.methodParameterCount(method); i++) {
+                    out.writeUTF(mixinModel.methodParameterName(method, i));
+                }
+                out.writeInt(mixinModel.methodExceptionCount(method));
+                for (int i = 0; i < mixinModel.methodExceptionCount(method); i++) {
+                    out.writeUTF(mixinModel.methodException(method, i));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Hashing.toHex(Hashing.hash(bytes.toByteArray()));
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * @return The cached class bytes, or null if the class isn't cached
+     */
+    @Nullable
+    public byte[] get(String key) {
+        Path path = path(key);
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read cached class {}", path, e);
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] classBytes) {
+        Path path = path(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.write(temp, classBytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sizeEstimate.bytes.addAndGet(classBytes.length);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to cache class {}", path, e);
+        }
+    }
+
+    /**
+     * If the cache may be larger than its bound, deletes the least recently used entries until it is within three
+     * quarters of it, so the next transforms don't need to measure it again
+     */
+    public void evict() {
+        if (!needsMeasuring()) {
+            return;
+        }
+        synchronized (sizeEstimate) {
+            if (!needsMeasuring()) { // measured by another transform meanwhile
+                return;
+            }
+            long measuredMillis = System.currentTimeMillis();
+            List<CacheEntry> entries = new ArrayList<>();
+            long totalSize = 0;
+            if (Files.isDirectory(directory)) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        if (file.getFileName().toString().endsWith(".tmp")) { // still being written by a concurrent put
+                            continue;
+                        }
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.isRegularFile()) {
+                            entries.add(new CacheEntry(file, attributes.size(), attributes.lastModifiedTime()));
+                            totalSize += attributes.size();
+                        }
+                    }
+                } catch (IOException | UncheckedIOException e) { // concurrently modified, retry next time
+                    LOGGER.debug("Failed to list cached classes", e);
+                    return;
+                }
+            }
+
+            if (totalSize > maxSize) {
+                long targetSize = maxSize / 4 * 3;
+                entries.sort(Comparator.comparing(entry -> entry.lastUsed));
+                for (CacheEntry entry : entries) {
+                    if (totalSize <= targetSize) {
+                        break;
+                    }
+                    try {
+                        Files.deleteIfExists(entry.path);
+                        totalSize -= entry.size;
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to evict cached class {}", entry.path, e);
+                    }
+                }
+            }
+            sizeEstimate.bytes.set(totalSize);
+            sizeEstimate.measuredMillis = measuredMillis;
+        }
+    }
+
+    private boolean needsMeasuring() {
+        return sizeEstimate.measuredMillis == 0 || sizeEstimate.bytes.get() > maxSize
+            || System.currentTimeMillis() - sizeEstimate.measuredMillis > REMEASURE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * The size of a cache directory when it was last measured, plus the bytes added by this JVM since
+     */
+    private static final class SizeEstimate {
+        final AtomicLong bytes = new AtomicLong();
+        volatile long measuredMillis; // 0 if never measured
+    }
+
+    private static final class CacheEntry {
+        final Path path;
+        final long size;
+        final FileTime lastUsed;
+
+        CacheEntry(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
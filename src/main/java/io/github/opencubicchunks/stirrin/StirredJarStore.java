@@ -0,0 +1,101 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+
+/**
+ * Stores stirred jars keyed by the content of the input jar and the fingerprint of the {@link MixinModel} applied to it.
+ *
+ * Gradle re-runs the transform whenever any mixin source changes, but most edits (eg: to method bodies) leave the model
+ * unchanged, in which case the previously stirred jar is reused instead of stirring again.
+ */
+public class StirredJarStore {
+    private static final int MAX_JARS_PER_ARTIFACT = 4;
+
+    private final Path directory;
+
+    public StirredJarStore(Path cacheDirectory) {
+        this.directory = cacheDirectory.resolve("jars");
+    }
+
+    /**
+     * @param artifactHash The {@link Hashing#hashFile hash} of the artifact
+     * @return The key of the stirred jar produced by applying the model to the artifact
+     */
+    public static String key(byte[] artifactHash, MixinModel mixinModel) {
+        MessageDigest digest = Hashing.newDigest();
+        digest.update(Integer.toString(StirrinTransformer.OUTPUT_VERSION).getBytes(StandardCharsets.UTF_8));
+        digest.update(artifactHash);
+        digest.update(mixinModel.fingerprint().getBytes(StandardCharsets.UTF_8));
+        return Hashing.toHex(digest.digest());
+    }
+
+    /**
+     * Copies the stored jar with the specified key to the output, if there is one
+     *
+     * @return true if the jar was found
+     */
+    public boolean copyTo(String artifactName, String key, File output) {
+        Path stored = directory.resolve(artifactName).resolve(key + ".jar");
+        try {
+            Files.copy(stored, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read stored stirred jar {}", stored, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores a stirred jar under the specified key, keeping only the most recently used jars for each artifact
+     */
+    public void store(String artifactName, String key, File stirredJar) {
+        Path artifactDirectory = directory.resolve(artifactName);
+        try {
+            Files.createDirectories(artifactDirectory);
+            Path temp = Files.createTempFile(artifactDirectory, key, ".tmp");
+            Files.copy(stirredJar.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, artifactDirectory.resolve(key + ".jar"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            prune(artifactDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to store stirred jar {}", stirredJar, e);
+        }
+    }
+
+    private static void prune(Path artifactDirectory) throws IOException {
+        List<Path> jars;
+        try (Stream<Path> files = Files.list(artifactDirectory)) {
+            jars = files.filter(file -> file.toString().endsWith(".jar"))
+                .sorted(Comparator.comparing(StirredJarStore::lastModified).reversed())
+                .collect(Collectors.toList());
+        }
+        for (Path jar : jars.subList(Math.min(MAX_JARS_PER_ARTIFACT, jars.size()), jars.size())) {
+            Files.deleteIfExists(jar);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) { // deleted concurrently, prune it first
+            return FileTime.fromMillis(0);
+        }
+    }
+}
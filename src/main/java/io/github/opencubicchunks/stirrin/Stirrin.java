@@ -79,7 +79,7 @@ public class Stirrin implements Plugin<Project> {
         mixinConfigsBySourceSet.forEach(((sourceSet, mixinConfigs) -> {
             for (File mixinConfig : mixinConfigs) {
                 try {
-                    System.out.println("Supplied mixin config path: " + mixinConfig);
+                    LOGGER.debug("Supplied mixin config path: {}", mixinConfig);
                     String fileText = Files.readString(mixinConfig.toPath());
 
                     JsonObject jsonObject = gson.fromJson(fileText, JsonObject.class);
@@ -2,31 +2,42 @@ package io.github.opencubicchunks.stirrin;
 
 import io.github.opencubicchunks.stirrin.StirrinTransform.Parameters;
 import io.github.opencubicchunks.stirrin.util.Pair;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.*;
 import org.gradle.api.attributes.LibraryElements;
+import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.SourceSetOutput;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
-import static io.github.opencubicchunks.stirrin.util.MapUtil.mapKeys;
-
 public class StirrinExtension {
+    private static final long DEFAULT_CLASS_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final String DEFAULT_PARSER_MAX_HEAP = "1g";
+
     private final Project project;
     private final Parameters parameters;
 
     public StirrinExtension(Project project, Parameters parameters) {
         this.project = project;
         this.parameters = parameters;
+        this.parameters.setCacheDirectory(new File(project.getGradle().getGradleUserHomeDir(), "caches/stirrin"));
+        this.parameters.getReportDirectory().set(project.getLayout().getBuildDirectory().dir("reports/stirrin"));
+        this.parameters.setProjectId(project.getRootProject().getName() + project.getPath());
+        this.parameters.setRootDirectory(project.getRootDir());
+        this.parameters.setClassCacheSize(DEFAULT_CLASS_CACHE_SIZE);
+        this.parameters.setParserMaxHeap(DEFAULT_PARSER_MAX_HEAP);
+        this.parameters.setClassesDirectories(Collections.emptySet());
+        this.parameters.setSourceSetDirectoriesByName(Collections.emptyMap());
+        this.parameters.setParseDirectoriesByName(Collections.emptyMap());
     }
 
     public void setAcceptedJars(String acceptedJars) {
@@ -37,23 +48,180 @@ public class StirrinExtension {
         SourceSetContainer sourceSets = project.getExtensions().findByType(JavaPluginExtension.class).getSourceSets();
 
         Set<Pair<Path, String>> mixinSourceFiles = Stirrin.findMixinSourceFiles(mixinConfigFiles, sourceSets);
-        Map<Path, String> sourceFiles = new HashMap<>();
-        mixinSourceFiles.forEach(pair -> sourceFiles.put(pair.l(), pair.r()));
 
         Set<Path> sourceSetDirectories = new HashSet<>();
+        Set<File> classesDirectories = new HashSet<>();
+        Map<String, Set<File>> sourceSetDirectoriesByName = new HashMap<>();
         for (SourceSet sourceSet : sourceSets) {
             sourceSetDirectories.addAll(sourceSet.getJava().getSrcDirs().stream().map(File::toPath).collect(Collectors.toSet()));
+            sourceSetDirectoriesByName.put(sourceSet.getName(), new HashSet<>(sourceSet.getJava().getSrcDirs()));
+            classesDirectories.addAll(sourceSet.getOutput().getClassesDirs().getFiles());
         }
 
         this.parameters.setConfigs(mixinConfigFiles);
-        this.parameters.setMixinSourceFiles(mapKeys(sourceFiles, Path::toFile));
-        this.parameters.setSourceSetDirectories(sourceSetDirectories.stream().map(Path::toFile).collect(Collectors.toSet()));
+        this.parameters.getMixinSourceFiles().setFrom(mixinSourceFiles.stream().map(pair -> pair.l().toFile()).collect(Collectors.toSet()));
+        this.parameters.setMixinClasses(mixinSourceFiles.stream().map(Pair::r).collect(Collectors.toSet()));
+        this.parameters.getSourceSetDirectories().setFrom(sourceSetDirectories.stream().map(Path::toFile).collect(Collectors.toSet()));
+        this.parameters.setClassesDirectories(classesDirectories);
+        this.parameters.setSourceSetDirectoriesByName(sourceSetDirectoriesByName);
+        if (project.getState().getExecuted()) {
+            this.parameters.setParseDirectoriesByName(parseDirectoriesByName(sourceSets));
+        } else { // dependencies may still be declared after this
+            project.afterEvaluate(p -> this.parameters.setParseDirectoriesByName(parseDirectoriesByName(sourceSets)));
+        }
+    }
+
+    private Map<String, Set<File>> parseDirectoriesByName(SourceSetContainer sourceSets) {
+        Map<String, Set<File>> parseDirectoriesByName = new HashMap<>();
+        for (SourceSet sourceSet : sourceSets) {
+            parseDirectoriesByName.put(sourceSet.getName(), parseDirectories(project.getPath(), sourceSet, sourceSets));
+        }
+        return parseDirectoriesByName;
+    }
+
+    /**
+     * @return The source directories of the source set and of every source set on its compile classpath, transitively.
+     * If the compile classpath can't be inspected without resolving it, the source directories of every source set.
+     *
+     * @param projectPath The path of the project declaring the source sets
+     */
+    static Set<File> parseDirectories(String projectPath, SourceSet sourceSet, SourceSetContainer sourceSets) {
+        Set<File> directories = new HashSet<>();
+        Set<SourceSet> visited = new HashSet<>();
+        Deque<SourceSet> pending = new ArrayDeque<>(Collections.singleton(sourceSet));
+        while (!pending.isEmpty()) {
+            SourceSet current = pending.remove();
+            if (!visited.add(current)) {
+                continue;
+            }
+            directories.addAll(current.getJava().getSrcDirs());
+            Set<SourceSet> classpathSourceSets = new HashSet<>();
+            if (!collectSourceSets(current.getCompileClasspath(), projectPath, sourceSets, classpathSourceSets)) {
+                return sourceSets.stream().flatMap(s -> s.getJava().getSrcDirs().stream()).collect(Collectors.toSet());
+            }
+            pending.addAll(classpathSourceSets);
+        }
+        return directories;
+    }
+
+    /**
+     * Adds every source set whose output is part of the classpath to {@code sourceSetsOut}, without resolving any
+     * configuration. The declared dependencies of configurations are inspected instead: external dependencies and other
+     * projects don't contribute source sets, and file dependencies are inspected like the rest of the classpath.
+     *
+     * @return false if the classpath contains something that can't be inspected, such as a dependency on a variant of
+     * the project itself (eg: its test fixtures), as that can't be mapped to a source set without resolving it
+     */
+    private static boolean collectSourceSets(@Nullable Object classpath, String projectPath, SourceSetContainer sourceSets,
+                                             Set<SourceSet> sourceSetsOut) {
+        if (classpath == null) {
+            return true;
+        }
+        if (classpath instanceof Configuration) {
+            for (Dependency declared : ((Configuration) classpath).getAllDependencies()) {
+                if (declared instanceof ProjectDependency) {
+                    ProjectDependency dependency = (ProjectDependency) declared;
+                    if (dependency.getDependencyProject().getPath().equals(projectPath)) {
+                        return false;
+                    }
+                } else if (declared instanceof FileCollectionDependency) {
+                    if (!collectSourceSets(((FileCollectionDependency) declared).getFiles(), projectPath, sourceSets, sourceSetsOut)) {
+                        return false;
+                    }
+                } else if (!(declared instanceof ExternalDependency)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (classpath instanceof SourceSetOutput) {
+            for (SourceSet sourceSet : sourceSets) {
+                if (sourceSet.getOutput() == classpath) {
+                    sourceSetsOut.add(sourceSet);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (classpath instanceof ConfigurableFileCollection) {
+            for (Object element : ((ConfigurableFileCollection) classpath).getFrom()) {
+                if (!collectSourceSets(element, projectPath, sourceSets, sourceSetsOut)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (classpath instanceof Collection) {
+            for (Object element : (Collection<?>) classpath) {
+                if (!collectSourceSets(element, projectPath, sourceSets, sourceSetsOut)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
     public void setDebug(boolean value) {
         this.parameters.setDebug(value ? System.nanoTime() : 0);
     }
 
+    /**
+     * Bounds the number of jar bytes all running Stirrin transforms may hold in memory at once. Transforms block
+     * while the cap is reached. 0 (the default) means unbounded. The cap is shared by every build in the Gradle daemon,
+     * so if projects configure different caps the most recently used one applies.
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        if (maxInFlightBytes < 0) {
+            throw new InvalidUserDataException("maxInFlightBytes must not be negative, got " + maxInFlightBytes);
+        }
+        this.parameters.setMaxInFlightBytes(maxInFlightBytes);
+    }
+
+    /**
+     * If true, every interface and stub added or skipped is logged, instead of a summary of counts per jar
+     */
+    public void setVerbose(boolean verbose) {
+        this.parameters.setVerbose(verbose);
+    }
+
+    /**
+     * Bounds the size of the stirred class cache shared by every project on this machine, in bytes. 0 disables the cache.
+     */
+    public void setClassCacheSize(long classCacheSize) {
+        if (classCacheSize < 0) {
+            throw new InvalidUserDataException("classCacheSize must not be negative, got " + classCacheSize);
+        }
+        this.parameters.setClassCacheSize(classCacheSize);
+    }
+
+    /**
+     * If true, mixins are parsed in a separate JVM that is reused across builds, keeping the JDT binding environment
+     * out of the Gradle daemon's heap. There is a single such JVM per daemon, so transforms of several artifacts or
+     * projects running at once parse one after another.
+     */
+    public void setIsolateParser(boolean isolateParser) {
+        this.parameters.setIsolateParser(isolateParser);
+    }
+
+    /**
+     * If true, the source sets are watched once mixins have been parsed, and changed mixins are re-parsed in the
+     * background so the model is already up to date when the transform next runs. Useful for continuous builds and IDE syncs.
+     */
+    public void setPrewarm(boolean prewarm) {
+        this.parameters.setPrewarm(prewarm);
+    }
+
+    /**
+     * Maximum heap size of the isolated parser process, in the format of {@code -Xmx}, eg: {@code 2g}
+     */
+    public void setParserMaxHeap(String parserMaxHeap) {
+        if (!parserMaxHeap.matches("\\d+[kKmMgG]?")) {
+            throw new InvalidUserDataException("parserMaxHeap must be a heap size such as 1g or 512m, got " + parserMaxHeap);
+        }
+        this.parameters.setParserMaxHeap(parserMaxHeap);
+    }
+
     @CacheableRule
     public static abstract class MinecraftRule implements ComponentMetadataRule {
         private final String dependency;
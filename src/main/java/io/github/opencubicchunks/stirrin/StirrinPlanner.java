@@ -0,0 +1,173 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.ClassHierarchy;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.ty.TargetPlan;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+import static io.github.opencubicchunks.stirrin.ty.ClassHierarchy.methodKey;
+
+/**
+ * Decides which interfaces and stub methods to add to each mixin target, such that only methods not already satisfied
+ * anywhere in the target's type hierarchy are stubbed.
+ *
+ * Classes are resolved lazily and memoized, so a target's plan accounts for everything added to its superclasses,
+ * regardless of the order classes are rewritten in.
+ */
+public class StirrinPlanner {
+    private final MixinModel mixinModel;
+    private final ClassHierarchy hierarchy;
+    private final TransformStats stats;
+    private final boolean verbose;
+
+    private final Map<String, ResolvedClass> resolvedClasses = new HashMap<>();
+
+    /**
+     * @param stats Counts of skipped interfaces and methods are added to this
+     * @param verbose If true, every skipped interface and method is logged
+     */
+    public StirrinPlanner(MixinModel mixinModel, ClassHierarchy hierarchy, TransformStats stats, boolean verbose) {
+        this.mixinModel = mixinModel;
+        this.hierarchy = hierarchy;
+        this.stats = stats;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Resolves every supertype of the mixin targets, and every interface that will be added to them, ahead of rewriting
+     * the jar. While a target is being rewritten the budget for its bytes is held, so planning it must not need to read
+     * any other class from the jar, see {@link ClassHierarchy#detachBudget()}.
+     */
+    public void prepare() {
+        for (int target = 0; target < mixinModel.targetCount(); target++) {
+            String targetName = mixinModel.targetName(target);
+            String superName = hierarchy.superName(targetName);
+            if (superName != null) {
+                resolve(superName);
+            }
+            hierarchy.collectInterfaces(hierarchy.interfaces(targetName), new HashSet<>(), new HashSet<>());
+            for (int i = 0, interfaceCount = mixinModel.targetInterfaceCount(target); i < interfaceCount; i++) {
+                String interfaceName = mixinModel.interfaceName(mixinModel.targetInterface(target, i));
+                hierarchy.collectInterfaces(Collections.singleton(interfaceName), new HashSet<>(), new HashSet<>());
+            }
+        }
+    }
+
+    /**
+     * @param internalName The internal name of a class in the jar
+     * @return The changes to make to the class, or null if it is not a mixin target
+     */
+    @Nullable
+    public TargetPlan plan(String internalName) {
+        return resolve(internalName).plan;
+    }
+
+    private ResolvedClass resolve(String internalName) {
+        ResolvedClass resolved = resolvedClasses.get(internalName);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        Set<String> interfaces = new HashSet<>();
+        Set<String> members = new HashSet<>();
+
+        // Everything visible on the superclass after it has been stirred is inherited, including its stubs
+        String superName = hierarchy.superName(internalName);
+        if (superName != null) {
+            ResolvedClass superClass = resolve(superName);
+            interfaces.addAll(superClass.interfaces);
+            members.addAll(superClass.members);
+        }
+        hierarchy.collectInterfaces(hierarchy.interfaces(internalName), interfaces, members);
+        hierarchy.collectInheritableMethods(internalName, members);
+
+        TargetPlan plan = null;
+        int target = mixinModel.findTarget(internalName);
+        if (target >= 0) {
+            plan = planTarget(internalName, target, interfaces, members);
+        }
+
+        resolved = new ResolvedClass(interfaces, members, plan);
+        resolvedClasses.put(internalName, resolved);
+        return resolved;
+    }
+
+    /**
+     * @param interfaces Every interface implemented by the class before stirring, updated with the interfaces added
+     * @param members Every method satisfied by the class before stirring, updated with the stubs added
+     */
+    private TargetPlan planTarget(String internalName, int target, Set<String> interfaces, Set<String> members) {
+        Map<String, Integer> declaredMethods = hierarchy.declaredMethods(internalName);
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0, interfaceCount = mixinModel.targetInterfaceCount(target); i < interfaceCount; i++) {
+            int itf = mixinModel.targetInterface(target, i);
+            if (interfaces.contains(mixinModel.interfaceName(itf))) {
+                stats.interfacesAlreadyImplemented++;
+                if (verbose) {
+                    LOGGER.info("Class {} already implements interface {}, it will not be applied", internalName, mixinModel.interfaceName(itf));
+                }
+                continue;
+            }
+            candidates.add(itf);
+        }
+
+        // An interface extended by another interface being added does not need to be listed itself
+        Set<String> impliedInterfaces = new HashSet<>();
+        for (int itf : candidates) {
+            hierarchy.collectInterfaces(hierarchy.interfaces(mixinModel.interfaceName(itf)), impliedInterfaces, new HashSet<>());
+        }
+
+        List<String> interfacesToAdd = new ArrayList<>();
+        List<Integer> methodsToStub = new ArrayList<>();
+        for (int itf : candidates) {
+            String interfaceName = mixinModel.interfaceName(itf);
+            if (impliedInterfaces.contains(interfaceName)) {
+                stats.interfacesImplied++;
+                if (verbose) {
+                    LOGGER.info("Class {} | Interface {} is implied by another added interface, it will not be listed", internalName, interfaceName);
+                }
+            } else {
+                interfacesToAdd.add(interfaceName);
+            }
+
+            for (int method = mixinModel.interfaceMethodStart(itf), end = mixinModel.interfaceMethodEnd(itf); method < end; method++) {
+                String methodKey = methodKey(mixinModel.methodName(method), mixinModel.methodDescriptor(method));
+                if (declaredMethods.containsKey(methodKey)) {
+                    stats.methodsClashing++;
+                    if (verbose) {
+                        LOGGER.error("Class {} | Not adding method with identical descriptor to existing method. Method: {}", internalName, methodKey);
+                    }
+                } else if (!members.add(methodKey)) {
+                    stats.methodsAlreadySatisfied++;
+                    if (verbose) {
+                        LOGGER.info("Class {} | Not adding method already satisfied in the type hierarchy. Method: {}", internalName, methodKey);
+                    }
+                } else {
+                    methodsToStub.add(method);
+                }
+            }
+        }
+
+        Set<String> addedMembers = new HashSet<>();
+        hierarchy.collectInterfaces(interfacesToAdd, interfaces, addedMembers);
+        members.addAll(addedMembers);
+
+        return new TargetPlan(interfacesToAdd, methodsToStub.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static final class ResolvedClass {
+        final Set<String> interfaces;
+        final Set<String> members;
+        @Nullable final TargetPlan plan;
+
+        ResolvedClass(Set<String> interfaces, Set<String> members, @Nullable TargetPlan plan) {
+            this.interfaces = interfaces;
+            this.members = members;
+            this.plan = plan;
+        }
+    }
+}
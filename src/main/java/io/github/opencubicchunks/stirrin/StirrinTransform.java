@@ -1,49 +1,162 @@
 package io.github.opencubicchunks.stirrin;
 
-import io.github.opencubicchunks.stirrin.ty.MethodEntry;
-import org.eclipse.jdt.core.dom.*;
+import io.github.opencubicchunks.stirrin.ty.ClassHierarchy;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.AbiFingerprint;
+import io.github.opencubicchunks.stirrin.util.FileHashes;
+import io.github.opencubicchunks.stirrin.util.Hashing;
+import io.github.opencubicchunks.stirrin.util.MemoryBudget;
 import org.gradle.api.artifacts.transform.*;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileSystemLocation;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.*;
-import org.objectweb.asm.Type;
+import org.gradle.work.NormalizeLineEndings;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import static io.github.opencubicchunks.stirrin.DescriptorUtils.classToDescriptor;
 import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
-import static io.github.opencubicchunks.stirrin.util.MapUtil.mapKeys;
-import static io.github.opencubicchunks.stirrin.util.MethodBindingUtils.*;
 
+/**
+ * Inputs are declared with relative path sensitivity and normalized line endings, so the stirred jar can be shared
+ * through the build cache between checkouts at different locations.
+ */
+@CacheableTransform
 public abstract class StirrinTransform implements TransformAction<StirrinTransform.Parameters> {
     interface Parameters extends TransformParameters {
         @Input String getAcceptedJars();
         void setAcceptedJars(String acceptedJars);
 
-        @InputFile Set<String> getConfigs();
+        @Input Set<String> getConfigs();
         void setConfigs(Set<String> configs);
 
         @Input long getDebug();
         void setDebug(long l);
 
-        @InputDirectory
-        Set<File> getSourceSetDirectories();
-        void setSourceSetDirectories(Set<File> sourceSetDirectories);
-
-        @Input
-        Map<File, String> getMixinSourceFiles();
-        void setMixinSourceFiles(Map<File, String> mixinSourceFiles);
+        /**
+         * Source directories of every source set, used to resolve types referenced by mixins
+         */
+        @InputFiles
+        @PathSensitive(PathSensitivity.RELATIVE)
+        @IgnoreEmptyDirectories
+        @NormalizeLineEndings
+        ConfigurableFileCollection getSourceSetDirectories();
+
+        @InputFiles
+        @PathSensitive(PathSensitivity.RELATIVE)
+        @NormalizeLineEndings
+        ConfigurableFileCollection getMixinSourceFiles();
+
+        /**
+         * Binary names of the mixin classes declared in {@link #getConfigs()}
+         */
+        @Input Set<String> getMixinClasses();
+        void setMixinClasses(Set<String> mixinClasses);
+
+        /**
+         * Maximum number of jar bytes held in memory at once, shared by all running transforms. 0 means unbounded.
+         */
+        @Internal long getMaxInFlightBytes();
+        void setMaxInFlightBytes(long maxInFlightBytes);
+
+        /**
+         * If true, every interface and stub added or skipped is logged instead of a per-jar summary
+         */
+        @Console boolean getVerbose();
+        void setVerbose(boolean verbose);
+
+        /**
+         * User-level directory in which stirred output is stored for reuse, see {@link StirredJarStore}
+         */
+        @Internal File getCacheDirectory();
+        void setCacheDirectory(File cacheDirectory);
+
+        /**
+         * Directory of the project the transform is registered in, to which a report of why it re-ran is written, see
+         * {@link RerunDiagnostics}
+         */
+        @Internal DirectoryProperty getReportDirectory();
+
+        /**
+         * Identifies the project the transform is registered in independently of where it is checked out, so
+         * {@link RerunDiagnostics} compares against its previous run after the checkout is moved
+         */
+        @Internal String getProjectId();
+        void setProjectId(String projectId);
+
+        /**
+         * Root directory of the build, paths within which are reported relative to it by {@link RerunDiagnostics}
+         */
+        @Internal File getRootDirectory();
+        void setRootDirectory(File rootDirectory);
+
+        /**
+         * Maximum total size in bytes of the user-level stirred class cache, see {@link StirredClassCache}. 0 disables it.
+         */
+        @Internal long getClassCacheSize();
+        void setClassCacheSize(long classCacheSize);
+
+        /**
+         * If true, mixins are parsed in a separate JVM, see {@link IsolatedMixinExtractor}. Concurrent transforms are
+         * serialized while parsing.
+         */
+        @Internal boolean getIsolateParser();
+        void setIsolateParser(boolean isolateParser);
+
+        /**
+         * Maximum heap size of the isolated parser process, eg: {@code 1g}
+         */
+        @Internal String getParserMaxHeap();
+        void setParserMaxHeap(String parserMaxHeap);
+
+        /**
+         * If true, mixins are re-parsed in the background as they change, see {@link MixinModelService}
+         */
+        @Internal boolean getPrewarm();
+        void setPrewarm(boolean prewarm);
+
+        /**
+         * Output directories of every source set. Up-to-date compiled interfaces are read from here instead of being
+         * resolved from source, see {@link CompiledInterfaces}
+         */
+        @Internal Set<File> getClassesDirectories();
+        void setClassesDirectories(Set<File> classesDirectories);
+
+        /**
+         * Source directories of each source set by name. The mixin model of each source set is extracted and stored
+         * independently, see {@link MixinModelStore}
+         */
+        @Internal Map<String, Set<File>> getSourceSetDirectoriesByName();
+        void setSourceSetDirectoriesByName(Map<String, Set<File>> sourceSetDirectoriesByName);
+
+        /**
+         * Source directories the mixins of each source set are parsed against, by name: its own and those of every
+         * source set on its compile classpath
+         */
+        @Internal Map<String, Set<File>> getParseDirectoriesByName();
+        void setParseDirectoriesByName(Map<String, Set<File>> parseDirectoriesByName);
     }
 
     @PathSensitive(PathSensitivity.NAME_ONLY)
     @InputArtifact
     public abstract Provider<FileSystemLocation> getInputArtifact();
 
+    /**
+     * Only the ABI of dependencies affects the mixin model, so implementation changes in projects added through
+     * {@link StirrinExtension#addDependency(org.gradle.api.artifacts.ProjectDependency)} don't re-run the transform
+     */
+    @CompileClasspath
     @InputArtifactDependencies
     public abstract FileCollection getTransitiveDeps();
 
@@ -54,138 +167,168 @@ public abstract class StirrinTransform implements TransformAction<StirrinTransfo
         Pattern acceptedJars = Pattern.compile(getParameters().getAcceptedJars());
 
         if (acceptedJars.matcher(fileName).matches()) {
-            LOGGER.warn(String.format("Found accepted jar: %s", artifactFile));
-            LOGGER.debug(String.format("Transitive Deps: %s", getTransitiveDeps().getFiles()));
+            LOGGER.warn("Found accepted jar: {}", artifactFile);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Transitive Deps: {}", getTransitiveDeps().getFiles());
+            }
 
             String fileNameNoExt = fileName.substring(0, fileName.lastIndexOf("."));
             String outputFileName = fileNameNoExt + "-stirred.jar";
 
-            Set<Path> dependencies = getTransitiveDeps().getFiles().stream().map(File::toPath).collect(Collectors.toSet());
-            dependencies.add(artifactFile.toPath());
-            Set<Path> sourceSets = getParameters().getSourceSetDirectories().stream().map(File::toPath).collect(Collectors.toSet());
-            Parser parser = new Parser(dependencies, sourceSets);
-
-            Map<String, Map<Type, Collection<MethodEntry>>> mixinInterfacesByTarget = 
-                    getMixinInterfacesByTarget(parser, mapKeys(getParameters().getMixinSourceFiles(), File::toPath));
-
-            StirrinTransformer.transformMinecraftJar(mixinInterfacesByTarget, artifactFile, outputs.file(outputFileName));
-
-            LOGGER.warn(String.format("transformed %s", outputFileName));
+            Set<Path> sourceSets = getParameters().getSourceSetDirectories().getFiles().stream().map(File::toPath).collect(Collectors.toSet());
+            Set<Path> mixinSourceFiles = getParameters().getMixinSourceFiles().getFiles().stream().map(File::toPath).collect(Collectors.toSet());
+            Set<Path> classesDirectories = getParameters().getClassesDirectories().stream().map(File::toPath).collect(Collectors.toSet());
+            Set<String> mixinClasses = getParameters().getMixinClasses();
+
+            long start = System.nanoTime();
+            byte[] artifactHash;
+            // computed once and shared by the diagnostics, the stored model key and the model service
+            Map<Path, String> dependencyFingerprints = new TreeMap<>();
+            FileHashes fileHashes = new FileHashes();
+            RerunDiagnostics diagnostics = new RerunDiagnostics(getParameters().getCacheDirectory().toPath(),
+                getParameters().getReportDirectory().get().getAsFile().toPath(), fileName, getParameters().getProjectId(), getParameters().getRootDirectory().toPath(),
+                fileHashes);
+            try {
+                artifactHash = Hashing.hashFile(artifactFile.toPath());
+                diagnostics.record("artifact", fileName, Hashing.toHex(artifactHash));
+                dependencyFingerprints.put(artifactFile.toPath(), Hashing.toHex(artifactHash));
+                for (Path transitiveDep : getTransitiveDeps().getFiles().stream().map(File::toPath).collect(Collectors.toList())) {
+                    String fingerprint = Files.exists(transitiveDep) ? AbiFingerprint.of(transitiveDep) : "missing";
+                    dependencyFingerprints.put(transitiveDep, fingerprint);
+                    diagnostics.record("transitive dependencies", transitiveDep, fingerprint);
+                }
+                for (Path mixinSourceFile : mixinSourceFiles) {
+                    diagnostics.record("mixin sources", mixinSourceFile, Hashing.toHex(fileHashes.hash(mixinSourceFile)));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            diagnostics.recordFiles("source sets", sourceSets, file -> !mixinSourceFiles.contains(file));
+            diagnostics.recordValues("configs", getParameters().getConfigs());
+            diagnostics.recordValues("mixin classes", mixinClasses);
+            diagnostics.record("parameters", "acceptedJars", getParameters().getAcceptedJars());
+            diagnostics.record("parameters", "debug", Long.toString(getParameters().getDebug()));
+
+            stir(artifactFile, outputs.file(outputFileName), artifactHash, dependencyFingerprints, fileHashes, sourceSets, mixinSourceFiles,
+                classesDirectories, mixinClasses);
+            diagnostics.report(System.nanoTime() - start);
+            LOGGER.warn("transformed {}", outputFileName);
         } else {
-            LOGGER.debug(String.format("Rejected jar %s", fileName));
+            LOGGER.debug("Rejected jar {}", fileName);
             outputs.file(getInputArtifact());
         }
     }
 
-    private static Map<String, Map<Type, Collection<MethodEntry>>> getMixinInterfacesByTarget(Parser parser, Map<Path, String> mixinSourceFiles) {
-        Map<String, Map<Type, Collection<MethodEntry>>> mixinInterfacesByTarget = new HashMap<>();
-
-        Set<String> mixinClasses = new HashSet<>(mixinSourceFiles.values());
-
-        FileASTRequestor requestor = new FileASTRequestor() {
-            @Override public void acceptAST(String sourceFilePath, CompilationUnit cu) {
-                for (Object type : cu.types()) {
-                    getInterfacesFromType((AbstractTypeDeclaration) type, mixinInterfacesByTarget, mixinClasses);
-                }
-            }
-        };
+    /**
+     * @param dependencyFingerprints Fingerprint of the artifact and of every transitive dependency
+     */
+    private void stir(File artifactFile, File outputFile, byte[] artifactHash, Map<Path, String> dependencyFingerprints, FileHashes fileHashes,
+                      Set<Path> sourceSets, Set<Path> mixinSourceFiles, Set<Path> classesDirectories, Set<String> mixinClasses) {
+        String fileName = artifactFile.getName();
+        long maxInFlightBytes = getParameters().getMaxInFlightBytes();
+        MemoryBudget budget = maxInFlightBytes > 0 ? MemoryBudget.shared(maxInFlightBytes) : null;
 
+        // The jar is indexed while mixins are parsed, the two only meet once the jar is rewritten
+        CompletableFuture<ClassHierarchy> hierarchy = StirrinTransformer.scanAsync(artifactFile, budget);
+        MixinModel mixinModel;
         try {
-            String[] sourcePaths = mixinSourceFiles.keySet().stream().map(sourcePath -> sourcePath.toAbsolutePath().toString()).toArray(String[]::new);
-            parser.getParser().createASTs(sourcePaths, null, new String[0], requestor, null);
-        } catch (Throwable t) {
-            t.printStackTrace();
+            mixinModel = extractMixinModel(dependencyFingerprints, fileHashes, sourceSets, mixinSourceFiles, classesDirectories, mixinClasses);
+        } catch (RuntimeException e) {
+            StirrinTransformer.discard(hierarchy);
+            throw e;
         }
 
-        return mixinInterfacesByTarget;
-    }
+        // The debug option forces the jar to actually be stirred, so stored jars are ignored
+        boolean useStore = getParameters().getDebug() == 0;
+        StirredJarStore store = new StirredJarStore(getParameters().getCacheDirectory().toPath());
+        String key = StirredJarStore.key(artifactHash, mixinModel);
+        if (useStore && store.copyTo(fileName, key, outputFile)) {
+            StirrinTransformer.discard(hierarchy);
+            LOGGER.warn("Stirring plan for {} is unchanged, reused previously stirred jar", fileName);
+            return;
+        }
 
-    private static void getInterfacesFromType(AbstractTypeDeclaration abstractTypeDecl, Map<String, Map<Type, Collection<MethodEntry>>> mixinInterfacesByTarget, Set<String> mixinClasses) {
-        if (abstractTypeDecl instanceof TypeDeclaration) {
-            TypeDeclaration typeDecl = (TypeDeclaration) abstractTypeDecl;
+        long classCacheSize = getParameters().getClassCacheSize();
+        StirredClassCache classCache = classCacheSize > 0 ? new StirredClassCache(getParameters().getCacheDirectory().toPath(), classCacheSize) : null;
+        StirrinTransformer.transformMinecraftJar(mixinModel, hierarchy, artifactFile, outputFile, budget, getParameters().getVerbose(), classCache);
+        store.store(fileName, key, outputFile);
+    }
 
-            if (!mixinClasses.contains(typeDecl.resolveBinding().getBinaryName())) {
+    /**
+     * Extracts the model of each source set independently, reusing the stored model of any source set whose sources
+     * are unchanged, and merges them. Every source set is parsed against its own directories and those of the main
+     * source set.
+     */
+    private MixinModel extractMixinModel(Map<Path, String> dependencyFingerprints, FileHashes fileHashes, Set<Path> sourceSets,
+                                         Set<Path> mixinSourceFiles, Set<Path> classesDirectories, Set<String> mixinClasses) {
+        Map<String, Set<Path>> directoriesBySourceSet = new TreeMap<>();
+        getParameters().getSourceSetDirectoriesByName().forEach((name, directories) ->
+            directoriesBySourceSet.put(name, directories.stream().map(File::toPath).collect(Collectors.toSet())));
+        Map<String, Set<File>> parseDirectoriesByName = getParameters().getParseDirectoriesByName();
+
+        MixinModelStore store = new MixinModelStore(getParameters().getCacheDirectory().toPath());
+        List<MixinFragment> models = new ArrayList<>();
+        Set<Path> remainingFiles = new HashSet<>(mixinSourceFiles);
+        directoriesBySourceSet.forEach((name, directories) -> {
+            Set<Path> files = remainingFiles.stream().filter(file -> directories.stream().anyMatch(file::startsWith)).collect(Collectors.toSet());
+            if (files.isEmpty()) {
                 return;
             }
-
-            Set<String> mixinTargets = getMixinTargetsForType(typeDecl);
-            if (!mixinTargets.isEmpty()) { // this type is a mixin and has targets
-                Map<Type, Collection<MethodEntry>> interfaceMethodsFromType = getInterfaceMethodsFromType(typeDecl);
-
-                for (String mixinTarget : mixinTargets) {
-                    Map<Type, Collection<MethodEntry>> methodsByInterface = mixinInterfacesByTarget.computeIfAbsent(mixinTarget, t -> new HashMap<>());
-
-                    interfaceMethodsFromType.forEach((t, methods) ->
-                            methodsByInterface.computeIfAbsent(t, tt -> new HashSet<>()).addAll(methods));
-                }
-            }
-
-            for (TypeDeclaration innerType : typeDecl.getTypes()) {
-                getInterfacesFromType(innerType, mixinInterfacesByTarget, mixinClasses);
-            }
+            remainingFiles.removeAll(files);
+
+            Set<File> parseFiles = parseDirectoriesByName.get(name);
+            Set<Path> parseDirectories = parseFiles == null ? sourceSets : parseFiles.stream().map(File::toPath).collect(Collectors.toSet());
+            Set<String> classes = mixinClasses.stream().filter(mixinClass -> isDeclaredIn(mixinClass, directories)).collect(Collectors.toSet());
+            models.add(extractSourceSet(name, store, dependencyFingerprints, fileHashes, parseDirectories, files, classesDirectories, classes));
+        });
+        if (!remainingFiles.isEmpty()) { // not in any known source set, parse against everything
+            models.add(extractSourceSet("<unknown>", store, dependencyFingerprints, fileHashes, sourceSets, remainingFiles, classesDirectories, mixinClasses));
         }
+        return MixinFragment.merge(models, LOGGER::error);
     }
 
-    private static Map<Type, Collection<MethodEntry>> getInterfaceMethodsFromType(TypeDeclaration typeDecl) {
-        Map<Type, Collection<MethodEntry>> methodsByInterface = new HashMap<>();
-        List<?> interfaceTypes = typeDecl.superInterfaceTypes();
-        for (Object anInterface : interfaceTypes) {
-            if (anInterface instanceof SimpleType) { // TODO: handle parameterized interfaces
-                ITypeBinding itf = ((SimpleType) anInterface).resolveBinding();
-
-                if (itf == null || itf.getBinaryName() == null) {
-                    LOGGER.error("Cannot resolve interface: " + ((SimpleType) anInterface).getName().toString() + " for Mixin: " + typeDecl.resolveBinding().getQualifiedName());
-                    continue;
-                }
-
-                Type itfType = Type.getType(classToDescriptor(itf.getBinaryName()));
-
-                for (IMethodBinding method : itf.getDeclaredMethods()) {
-                    try {
-                        String methodDescriptor = createMethodDescriptor(method);
-                        String methodSignature = createMethodSignature(method);
-
-                        List<String> paramNames = getParamNames(method);
+    private MixinFragment extractSourceSet(String name, MixinModelStore store, Map<Path, String> dependencyFingerprints, FileHashes fileHashes,
+                                           Set<Path> sourceSets, Set<Path> mixinSourceFiles, Set<Path> classesDirectories, Set<String> mixinClasses) {
+        Set<Path> dependencies = new TreeSet<>(dependencyFingerprints.keySet());
+        String key;
+        try {
+            key = MixinModelStore.key(dependencyFingerprints.values(), sourceSets, mixinClasses, fileHashes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MixinFragment stored = store.load(key);
+        if (stored != null) {
+            LOGGER.info("Sources of source set {} are unchanged, reused its stored mixin model", name);
+            return stored;
+        }
 
-                        methodsByInterface.computeIfAbsent(itfType, t -> new ArrayList<>()).add(
-                                new MethodEntry(method.getName(), methodDescriptor, methodSignature, paramNames, new ArrayList<>())
-                        );
-                    } catch (ClassNotFoundException e) {
-                        LOGGER.error("Cannot resolve type in method: " + method + " for Interface: " + itf.getQualifiedName());
-                    }
-                }
-            }
+        boolean isolateParser = getParameters().getIsolateParser();
+        String parserMaxHeap = getParameters().getParserMaxHeap();
+        Function<Set<Path>, Map<Path, MixinFragment>> extractor = isolateParser
+            ? files -> IsolatedMixinExtractor.extract(parserMaxHeap, dependencies, sourceSets, classesDirectories, files, mixinClasses)
+            : files -> MixinExtractor.extractEach(new Parser(dependencies, sourceSets), new CompiledInterfaces(classesDirectories, sourceSets),
+                files, mixinClasses);
+
+        List<String> errors = new ArrayList<>();
+        MixinModel mixinModel;
+        if (getParameters().getPrewarm()) {
+            List<Object> serviceKey = MixinModelService.key(dependencies, sourceSets, classesDirectories, mixinClasses, isolateParser, parserMaxHeap);
+            mixinModel = MixinModelService.get(serviceKey, sourceSets, extractor).model(mixinSourceFiles, dependencyFingerprints, errors::add);
+        } else {
+            mixinModel = MixinFragment.merge(extractor.apply(mixinSourceFiles).values(), errors::add);
         }
-        return methodsByInterface;
+        MixinFragment fragment = new MixinFragment(mixinModel, errors);
+        store.store(key, fragment);
+        return fragment;
     }
 
-    private static Set<String> getMixinTargetsForType(TypeDeclaration typeDecl) {
-        Set<String> mixinTargets = new HashSet<>();
-        for (Object modifier : typeDecl.modifiers()) {
-            if (modifier instanceof SingleMemberAnnotation) {
-                SingleMemberAnnotation annotation = (SingleMemberAnnotation) modifier;
-                if (annotation.resolveTypeBinding().getQualifiedName().equals("org.spongepowered.asm.mixin.Mixin")) {
-                    Expression value = annotation.getValue();
-                    if (value instanceof TypeLiteral) {
-                        mixinTargets.add(value.resolveTypeBinding().getTypeArguments()[0].getBinaryName());
-                        break;
-                    } else if (value instanceof ArrayInitializer) {
-                        for (Object expression : ((ArrayInitializer) value).expressions()) {
-                            if (expression instanceof TypeLiteral) {
-                                mixinTargets.add(((TypeLiteral) expression).resolveTypeBinding().getBinaryName());
-                            } else if (expression instanceof StringLiteral) {
-                                mixinTargets.add(((StringLiteral) expression).getLiteralValue());
-                            }
-                        }
-                        break;
-                    } else if (value instanceof StringLiteral) {
-                        mixinTargets.add(((StringLiteral) value).getLiteralValue());
-                    } else {
-                        throw new RuntimeException("Unhandled mixin annotation expression");
-                    }
-                }
-            }
-        }
-        return mixinTargets;
+    /**
+     * @param mixinClass The binary name of a mixin class
+     * @return True if the source file of the class is in one of the directories
+     */
+    private static boolean isDeclaredIn(String mixinClass, Set<Path> directories) {
+        int nestedStart = mixinClass.indexOf('$');
+        String sourceName = (nestedStart < 0 ? mixinClass : mixinClass.substring(0, nestedStart)).replace('.', '/') + ".java";
+        return directories.stream().anyMatch(directory -> Files.isRegularFile(directory.resolve(sourceName)));
     }
-}
\ No newline at end of file
+}
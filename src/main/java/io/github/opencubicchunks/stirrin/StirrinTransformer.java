@@ -1,7 +1,12 @@
 package io.github.opencubicchunks.stirrin;
 
-import io.github.opencubicchunks.stirrin.ty.MethodEntry;
-import org.objectweb.asm.Type;
+import io.github.opencubicchunks.stirrin.ty.ClassHierarchy;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.ty.TargetPlan;
+import io.github.opencubicchunks.stirrin.util.JarIO;
+import io.github.opencubicchunks.stirrin.util.MemoryBudget;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.*;
 
 import javax.annotation.Nullable;
@@ -9,81 +14,166 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static io.github.opencubicchunks.stirrin.DescriptorUtils.classToDescriptor;
 import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
-import static io.github.opencubicchunks.stirrin.util.JarIO.loadClasses;
-import static io.github.opencubicchunks.stirrin.util.JarIO.saveAsJar;
+import static io.github.opencubicchunks.stirrin.util.JarIO.transformJar;
 import static org.objectweb.asm.Opcodes.*;
 
 public class StirrinTransformer {
     /**
-     * @param mixinInterfacesByTarget Map from Mixin target class, to a map of methods by interface
+     * Bump when the output of this transformer changes for the same model, to invalidate stored output
+     */
+    static final int OUTPUT_VERSION = 1;
+
+    private static final ExecutorService SCAN_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Stirrin jar scanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts indexing the class hierarchy of the jar in the background, so it can overlap with extracting the mixin model
+     *
+     * @param budget If non-null, bounds the bytes of the jar held in memory, see {@link JarIO#forEachClass}
+     * @return The index, to be passed to {@link #transformMinecraftJar} or {@link #discard}
+     */
+    public static CompletableFuture<ClassHierarchy> scanAsync(File input, @Nullable MemoryBudget budget) {
+        CompletableFuture<ClassHierarchy> hierarchy = new CompletableFuture<>();
+        SCAN_EXECUTOR.execute(() -> {
+            try {
+                // discarding the future cancels it, which stops the scan at the next class
+                ClassHierarchy scanned = ClassHierarchy.scan(input, budget, hierarchy::isDone);
+                if (!hierarchy.complete(scanned)) {
+                    scanned.close();
+                }
+            } catch (IOException e) {
+                hierarchy.completeExceptionally(new UncheckedIOException(e));
+            } catch (Throwable t) {
+                hierarchy.completeExceptionally(t);
+            }
+        });
+        return hierarchy;
+    }
+
+    /**
+     * Stops the scan if it is still running, and closes the index, for when the jar doesn't need to be stirred after all
+     */
+    public static void discard(CompletableFuture<ClassHierarchy> hierarchy) {
+        if (hierarchy.cancel(false)) {
+            return;
+        }
+        hierarchy.thenAccept(scanned -> {
+            try {
+                scanned.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close jar", e);
+            }
+        });
+    }
+
+    /**
+     * @param mixinModel The interfaces and methods to apply to each Mixin target class
+     * @param scannedHierarchy The index of the input jar, see {@link #scanAsync}. Waited for only once the model is ready.
      * @param input The input minecraft jar
      * @param output The output minecraft jar
+     * @param budget If non-null, bounds the bytes of the jar held in memory, see {@link JarIO#transformJar}
+     * @param verbose If true, every interface and stub added or skipped is logged, instead of only a summary
+     * @param classCache If non-null, rewritten classes are looked up in and added to this cache
      */
-    public static void transformMinecraftJar(Map<String, Map<Type, Collection<MethodEntry>>> mixinInterfacesByTarget, File input, File output) {
+    public static void transformMinecraftJar(MixinModel mixinModel, CompletableFuture<ClassHierarchy> scannedHierarchy, File input, File output,
+                                             @Nullable MemoryBudget budget, boolean verbose, @Nullable StirredClassCache classCache) {
+        TransformStats stats = new TransformStats();
+        ClassHierarchy scanned;
         try {
-            List<ClassNode> classNodes = loadClasses(input);
+            scanned = scannedHierarchy.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        try (ClassHierarchy hierarchy = scanned.withMixinModel(mixinModel)) {
+            StirrinPlanner planner = new StirrinPlanner(mixinModel, hierarchy, stats, verbose);
+            planner.prepare();
+            // only the target being rewritten is read from now on, and its bytes are already held within the budget
+            hierarchy.detachBudget();
+
+            transformJar(input, output, budget, classBytes -> {
+                ClassReader classReader = new ClassReader(classBytes);
+                if (mixinModel.findTarget(classReader.getClassName()) < 0) {
+                    return classBytes; // untouched classes are copied as-is, without a round trip through a ClassNode
+                }
+                hierarchy.recordDeclaredMethods(classReader);
+                TargetPlan plan = planner.plan(classReader.getClassName());
+                if (plan == null || plan.isEmpty()) {
+                    return classBytes;
+                }
 
-            for (ClassNode classNode : classNodes) {
-                Map<Type, Collection<MethodEntry>> mixinInterfaces = mixinInterfacesByTarget.get(classNode.name.replace('/', '.'));
-                if (mixinInterfaces == null) {
-                    continue;
+                stats.classesStirred++;
+                stats.stubsAdded += plan.methods.length;
+                stats.interfacesAdded += plan.interfaces.size();
+
+                String cacheKey = null;
+                if (classCache != null) {
+                    cacheKey = StirredClassCache.key(classBytes, mixinModel, plan);
+                    byte[] cachedBytes = classCache.get(cacheKey);
+                    if (cachedBytes != null) {
+                        stats.classesFromCache++;
+                        return cachedBytes;
+                    }
                 }
 
-                // Methods are added first, as this method checks the current interfaces array of the classnode to see which
-                // interfaces to add
-                addInterfaceMethodsStubs(classNode, mixinInterfaces);
+                ClassNode classNode = new ClassNode(ASM9);
+                classReader.accept(classNode, 0);
 
-                Set<Type> interfacesToAdd = mixinInterfaces.keySet();
-                addInterfacesToClass(classNode, interfacesToAdd);
-            }
-            saveAsJar(classNodes, input, output);
+                addInterfaceMethodsStubs(classNode, mixinModel, plan, verbose);
+                addInterfacesToClass(classNode, plan, verbose);
+
+                ClassWriter classWriter = new ClassWriter(0);
+                classNode.accept(classWriter);
+                byte[] stirredBytes = classWriter.toByteArray();
+                if (classCache != null) {
+                    classCache.put(cacheKey, stirredBytes);
+                }
+                return stirredBytes;
+            });
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        if (classCache != null) {
+            classCache.evict();
+        }
+        LOGGER.info("Stirred {}: {}", input.getName(), stats);
+        if (stats.methodsClashing > 0 && !verbose) {
+            LOGGER.error("Stirred {}: {} interface methods have identical descriptors to methods declared in their target, set stirrin.verbose = true for details",
+                input.getName(), stats.methodsClashing);
+        }
     }
 
     /**
-     * For each method entry supplied, a stub method is added to the class. See {@link StirrinTransformer#createMethodStub(ClassNode, MethodEntry, String, String)}
+     * For each method in the plan, a stub method is added to the class. See {@link StirrinTransformer#createMethodStub(ClassNode, MixinModel, int)}
      *
      * @param classNode The {@link ClassNode} to modify
-     * @param methodEntriesByInterface Method entries by interface they come from, to add to the {@link ClassNode}
+     * @param mixinModel The model containing the method entries to add to the {@link ClassNode}
+     * @param plan The plan for the {@link ClassNode}, see {@link StirrinPlanner}
+     * @param verbose If true, each stub added is logged
      */
-    private static void addInterfaceMethodsStubs(ClassNode classNode, Map<Type, Collection<MethodEntry>> methodEntriesByInterface) {
-        methodEntriesByInterface.forEach((itf, methodEntries) -> {
-            if (classNode.interfaces.contains(itf.getInternalName())) {
-                LOGGER.warn(String.format("Class %s already implements interface %s, it will not be applied", classNode.name, itf.getClassName()));
-                return;
-            }
-            for (Iterator<MethodEntry> it = methodEntries.iterator(); it.hasNext(); ) {
-                MethodEntry methodEntry = it.next();
-
-                for (MethodNode method : classNode.methods) {
-                    if (methodEntry.name.equals(method.name) && methodEntry.descriptor.equals(method.desc)) {
-                        it.remove();
-                        // TODO: make this an error log once super-interfaces are properly taken into account
-                        LOGGER.warn(String.format("Class %s | Not adding method with identical descriptor to existing method. Method: %s%s", classNode.name, method.name, method.desc));
-                        break;
-                    }
-                }
+    private static void addInterfaceMethodsStubs(ClassNode classNode, MixinModel mixinModel, TargetPlan plan, boolean verbose) {
+        for (int method : plan.methods) {
+            classNode.methods.add(createMethodStub(classNode, mixinModel, method));
+            if (verbose) {
+                LOGGER.info("{}: Added stub method: {} | {}", classNode.name, mixinModel.methodName(method), mixinModel.methodDescriptor(method));
             }
-
-            for (MethodEntry methodEntry : methodEntries) {
-                MethodNode method = createMethodStub(classNode, methodEntry, methodEntry.descriptor, methodEntry.signature);
-
-                classNode.methods.add(method);
-                LOGGER.info(classNode.name + ": Added stub method: " + methodEntry.name + " | " + methodEntry.descriptor);
-            }
-        });
+        }
     }
 
     /**
      * Creates a method stub which throws a {@link RuntimeException} with some information.
      */
-    private static MethodNode createMethodStub(ClassNode classNode, MethodEntry methodEntry, String methodDescriptor, @Nullable String methodSignature) {
-        MethodNode method = new MethodNode(ASM9, ACC_PUBLIC, methodEntry.name, methodDescriptor, methodSignature, null);
+    private static MethodNode createMethodStub(ClassNode classNode, MixinModel mixinModel, int methodIdx) {
+        MethodNode method = new MethodNode(ASM9, ACC_PUBLIC, mixinModel.methodName(methodIdx), mixinModel.methodDescriptor(methodIdx), mixinModel.methodSignature(methodIdx), null);
         String descriptor = classToDescriptor(classNode.name);
         method.localVariables.add(new LocalVariableNode("this", descriptor, null, new LabelNode(), new LabelNode(), 0));
 
@@ -98,36 +188,33 @@ public class StirrinTransformer {
         method.maxStack = 3;
         method.maxLocals = 10; // + methodEntry.method.getArgumentTypes().length; // 1 for this, 1 for the error, one for each param //TODO: reimplement
 
-        if (methodEntry.parameterNames != null) {
-            method.parameters = new ArrayList<>();
-            for (String parameterName : methodEntry.parameterNames) {
-                method.parameters.add(new ParameterNode(parameterName, 0));
+        int parameterCount = mixinModel.methodParameterCount(methodIdx);
+        if (parameterCount >= 0) {
+            method.parameters = new ArrayList<>(parameterCount);
+            for (int i = 0; i < parameterCount; i++) {
+                method.parameters.add(new ParameterNode(mixinModel.methodParameterName(methodIdx, i), 0));
             }
         }
 
-        method.exceptions = new ArrayList<>();
-        method.exceptions.addAll(methodEntry.exceptions);
+        int exceptionCount = mixinModel.methodExceptionCount(methodIdx);
+        method.exceptions = new ArrayList<>(exceptionCount);
+        for (int i = 0; i < exceptionCount; i++) {
+            method.exceptions.add(mixinModel.methodException(methodIdx, i));
+        }
 
         return method;
     }
 
     /**
      * @param classNode The {@link ClassNode} to modify
-     * @param interfacesToAdd The interfaces to add to the {@link ClassNode}
+     * @param plan The plan for the {@link ClassNode}, see {@link StirrinPlanner}
+     * @param verbose If true, each interface added is logged
      */
-    private static void addInterfacesToClass(ClassNode classNode, Set<Type> interfacesToAdd) {
-        if (classNode.interfaces == null) {
-            classNode.interfaces = new ArrayList<>();
-        }
-
-        // Add each interface to the classNode's interfaces list without duplicates
-        Set<String> interfacesAdded = new HashSet<>();
-        for (Type itf : interfacesToAdd) {
-            String internalName = itf.getInternalName(); // classNode.interfaces does NOT contain L and ;
-            if (!classNode.interfaces.contains(internalName)) {
-                classNode.interfaces.add(internalName);
-                interfacesAdded.add(itf.getDescriptor());
-            }
+    private static void addInterfacesToClass(ClassNode classNode, TargetPlan plan, boolean verbose) {
+        List<String> interfacesAdded = new ArrayList<>();
+        for (String internalName : plan.interfaces) { // classNode.interfaces does NOT contain L and ;
+            classNode.interfaces.add(internalName);
+            interfacesAdded.add(classToDescriptor(internalName));
         }
 
         // For each interface added, add it to the class signature.
@@ -139,8 +226,10 @@ public class StirrinTransformer {
             classNode.signature = sb.toString();
         }
 
-        for (String interfaceAdded : interfacesAdded) {
-            LOGGER.info(String.format("%s: Added interface %s", classNode.name, interfaceAdded));
+        if (verbose) {
+            for (String interfaceAdded : interfacesAdded) {
+                LOGGER.info("{}: Added interface {}", classNode.name, interfaceAdded);
+            }
         }
     }
 }
@@ -0,0 +1,22 @@
+package io.github.opencubicchunks.stirrin;
+
+/**
+ * Counts of the changes made while stirring a single jar, logged as one summary instead of per item
+ */
+public class TransformStats {
+    int classesStirred;
+    int classesFromCache;
+    int interfacesAdded;
+    int stubsAdded;
+    int interfacesAlreadyImplemented;
+    int interfacesImplied;
+    int methodsAlreadySatisfied;
+    int methodsClashing;
+
+    @Override
+    public String toString() {
+        return String.format("%d classes stirred (%d from cache), %d interfaces added, %d stubs added; skipped %d already implemented interfaces, " +
+                "%d implied interfaces, %d already satisfied methods, %d methods clashing with declared methods",
+            classesStirred, classesFromCache, interfacesAdded, stubsAdded, interfacesAlreadyImplemented, interfacesImplied, methodsAlreadySatisfied, methodsClashing);
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.opencubicchunks.stirrin.ty;
+
+import io.github.opencubicchunks.stirrin.util.MemoryBudget;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static io.github.opencubicchunks.stirrin.util.JarIO.forEachClass;
+import static io.github.opencubicchunks.stirrin.util.JarIO.readBudgeted;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Index of the type hierarchy of the classes in a jar, together with the super-interfaces of the mixin interfaces in
+ * a {@link MixinModel}.
+ *
+ * The class graph is built once from the headers of every class in the jar, which doesn't depend on the mixin model, so
+ * it can be built while the model is still being extracted. The methods of a class are only read when they are first
+ * requested, as they are only needed for mixin targets and their supertypes, or are recorded from bytes the caller
+ * already holds, see {@link #recordDeclaredMethods}.
+ */
+public final class ClassHierarchy implements Closeable {
+    private final JarFile jar;
+    @Nullable private final MixinModel mixinModel;
+    @Nullable private MemoryBudget budget;
+
+    private final Map<String, ClassInfo> classes;
+    private final Map<String, Map<String, Integer>> methodsByClass = new HashMap<>();
+
+    private ClassHierarchy(JarFile jar, @Nullable MixinModel mixinModel, @Nullable MemoryBudget budget, Map<String, ClassInfo> classes) {
+        this.jar = jar;
+        this.mixinModel = mixinModel;
+        this.budget = budget;
+        this.classes = classes;
+    }
+
+    /**
+     * Reads the header of every class in the jar. Mixin interfaces are unknown to the returned index until
+     * {@link #withMixinModel} is called.
+     *
+     * @param cancelled Checked between classes, the returned index is incomplete if it returned true
+     */
+    public static ClassHierarchy scan(File jarFile, @Nullable MemoryBudget budget, BooleanSupplier cancelled) throws IOException {
+        Map<String, ClassInfo> classes = new HashMap<>();
+        forEachClass(jarFile, budget, cancelled, classBytes -> {
+            ClassReader reader = new ClassReader(classBytes);
+            classes.put(reader.getClassName(), new ClassInfo(reader.getSuperName(), Arrays.asList(reader.getInterfaces())));
+        });
+        return new ClassHierarchy(new JarFile(jarFile), null, budget, classes);
+    }
+
+    /**
+     * @return An index of the same jar that also knows the mixin interfaces of the model. It shares the jar of this
+     * index, so closing either closes both.
+     */
+    public ClassHierarchy withMixinModel(MixinModel mixinModel) {
+        return new ClassHierarchy(jar, mixinModel, budget, classes);
+    }
+
+    /**
+     * @return The superclass of the class, or null if it is unknown
+     */
+    @Nullable
+    public String superName(String internalName) {
+        ClassInfo info = classes.get(internalName);
+        return info == null ? null : info.superName;
+    }
+
+    /**
+     * @return The interfaces directly implemented by a class in the jar, or directly extended by a mixin interface
+     */
+    public List<String> interfaces(String internalName) {
+        ClassInfo info = classes.get(internalName);
+        if (info != null) {
+            return info.interfaces;
+        }
+        int itf = mixinModel == null ? -1 : mixinModel.findInterface(internalName);
+        if (itf < 0) {
+            return Collections.emptyList();
+        }
+        List<String> interfaces = new ArrayList<>(mixinModel.interfaceSuperCount(itf));
+        for (int i = 0; i < mixinModel.interfaceSuperCount(itf); i++) {
+            interfaces.add(mixinModel.interfaceSuper(itf, i));
+        }
+        return interfaces;
+    }
+
+    /**
+     * Records the methods declared by a class from its bytes, so they aren't read from the jar again
+     */
+    public void recordDeclaredMethods(ClassReader classReader) {
+        methodsByClass.computeIfAbsent(classReader.getClassName(), name -> {
+            Map<String, Integer> methods = new HashMap<>();
+            classReader.accept(methodCollector(methods), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return methods;
+        });
+    }
+
+    /**
+     * Stops acquiring from the memory budget when classes are read from the jar. Must be called before querying the
+     * index while holding part of the budget, as waiting for more of it could then wait on the caller forever.
+     */
+    public void detachBudget() {
+        budget = null;
+    }
+
+    /**
+     * @return {@link #methodKey} to access flags of every method declared by a class in the jar or a mixin interface
+     */
+    public Map<String, Integer> declaredMethods(String internalName) {
+        Map<String, Integer> methods = methodsByClass.get(internalName);
+        if (methods == null) {
+            methods = readDeclaredMethods(internalName);
+            methodsByClass.put(internalName, methods);
+        }
+        return methods;
+    }
+
+    /**
+     * Adds the method keys of every method declared by the class that is visible to subtypes to {@code methodsOut}
+     */
+    public void collectInheritableMethods(String internalName, Set<String> methodsOut) {
+        declaredMethods(internalName).forEach((key, access) -> {
+            if ((access & (ACC_PRIVATE | ACC_STATIC)) == 0 && key.charAt(0) != '<') {
+                methodsOut.add(key);
+            }
+        });
+    }
+
+    /**
+     * Adds the specified interfaces, and all of their super-interfaces known to this index, to {@code interfacesOut}.
+     * Every inheritable method they declare is added to {@code methodsOut}.
+     */
+    public void collectInterfaces(Collection<String> interfaces, Set<String> interfacesOut, Set<String> methodsOut) {
+        for (String itf : interfaces) {
+            if (interfacesOut.add(itf)) {
+                collectInheritableMethods(itf, methodsOut);
+                collectInterfaces(interfaces(itf), interfacesOut, methodsOut);
+            }
+        }
+    }
+
+    private Map<String, Integer> readDeclaredMethods(String internalName) {
+        Map<String, Integer> methods = new HashMap<>();
+        if (classes.containsKey(internalName)) {
+            JarEntry entry = jar.getJarEntry(internalName + ".class");
+            try {
+                readBudgeted(jar, entry, budget, classBytes ->
+                    new ClassReader(classBytes).accept(methodCollector(methods), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for memory budget", e);
+            }
+        } else if (mixinModel != null) {
+            int itf = mixinModel.findInterface(internalName);
+            if (itf >= 0) {
+                for (int method = mixinModel.interfaceMethodStart(itf), end = mixinModel.interfaceMethodEnd(itf); method < end; method++) {
+                    methods.put(methodKey(mixinModel.methodName(method), mixinModel.methodDescriptor(method)), ACC_PUBLIC | ACC_ABSTRACT);
+                }
+            }
+        }
+        return methods;
+    }
+
+    private static ClassVisitor methodCollector(Map<String, Integer> methods) {
+        return new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                methods.put(methodKey(name, descriptor), access);
+                return null;
+            }
+        };
+    }
+
+    public static String methodKey(String name, String descriptor) {
+        return name.concat(descriptor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        jar.close();
+    }
+
+    private static final class ClassInfo {
+        @Nullable final String superName;
+        final List<String> interfaces;
+
+        ClassInfo(@Nullable String superName, List<String> interfaces) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package io.github.opencubicchunks.stirrin.ty;
+
+import io.github.opencubicchunks.stirrin.util.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Immutable, compact model of which interfaces (and their methods) are applied to which mixin target classes.
+ *
+ * All names are stored once in a string table and referenced by index. Methods are stored in flat int arrays,
+ * grouped by the interface declaring them, so targets sharing an interface share its methods. Targets are keyed by
+ * internal name in an open-addressing hash index, so {@link #findTarget(String)} and every accessor are allocation-free.
+ */
+public final class MixinModel {
+    private static final int FORMAT_VERSION = 2;
+    private static final int NONE = -1;
+
+    private final String[] strings;
+
+    private final int[] interfaceNames;
+    private final int[] interfaceMethodStart; // interfaces + 1 entries
+    private final int[] interfaceSuperStart; // interfaces + 1 entries
+    private final int[] interfaceSupers;
+
+    private final int[] methodNames;
+    private final int[] methodDescriptors;
+    private final int[] methodSignatures;
+    private final int[] methodParameterStart;
+    private final int[] methodParameterCount; // NONE if parameter names are unavailable
+    private final int[] methodExceptionStart;
+    private final int[] methodExceptionCount;
+    private final int[] parameterNames;
+    private final int[] exceptions;
+
+    private final int[] targetNames;
+    private final int[] targetInterfaceStart; // targets + 1 entries
+    private final int[] targetInterfaces;
+
+    private final int[] targetTable;
+    private final int[] interfaceTable;
+
+    private MixinModel(String[] strings, int[] interfaceNames, int[] interfaceMethodStart, int[] interfaceSuperStart, int[] interfaceSupers,
+                       int[] methodNames, int[] methodDescriptors, int[] methodSignatures,
+                       int[] methodParameterStart, int[] methodParameterCount, int[] methodExceptionStart, int[] methodExceptionCount,
+                       int[] parameterNames, int[] exceptions,
+                       int[] targetNames, int[] targetInterfaceStart, int[] targetInterfaces) {
+        this.strings = strings;
+        this.interfaceNames = interfaceNames;
+        this.interfaceMethodStart = interfaceMethodStart;
+        this.interfaceSuperStart = interfaceSuperStart;
+        this.interfaceSupers = interfaceSupers;
+        this.methodNames = methodNames;
+        this.methodDescriptors = methodDescriptors;
+        this.methodSignatures = methodSignatures;
+        this.methodParameterStart = methodParameterStart;
+        this.methodParameterCount = methodParameterCount;
+        this.methodExceptionStart = methodExceptionStart;
+        this.methodExceptionCount = methodExceptionCount;
+        this.parameterNames = parameterNames;
+        this.exceptions = exceptions;
+        this.targetNames = targetNames;
+        this.targetInterfaceStart = targetInterfaceStart;
+        this.targetInterfaces = targetInterfaces;
+        this.targetTable = buildTable(strings, targetNames);
+        this.interfaceTable = buildTable(strings, interfaceNames);
+    }
+
+    private static int[] buildTable(String[] strings, int[] names) {
+        int size = Integer.highestOneBit(Math.max(names.length, 1) * 2 - 1) << 1;
+        int[] table = new int[size];
+        Arrays.fill(table, NONE);
+        for (int idx = 0; idx < names.length; idx++) {
+            int slot = strings[names[idx]].hashCode() & (size - 1);
+            while (table[slot] != NONE) {
+                slot = (slot + 1) & (size - 1);
+            }
+            table[slot] = idx;
+        }
+        return table;
+    }
+
+    private int find(int[] table, int[] names, String internalName) {
+        int mask = table.length - 1;
+        for (int slot = internalName.hashCode() & mask; ; slot = (slot + 1) & mask) {
+            int idx = table[slot];
+            if (idx == NONE || strings[names[idx]].equals(internalName)) {
+                return idx;
+            }
+        }
+    }
+
+    /**
+     * @param internalName The internal name of a class, eg: {@code net/minecraft/core/BlockPos}
+     * @return The index of the target, or -1 if the class is not a mixin target
+     */
+    public int findTarget(String internalName) {
+        return find(targetTable, targetNames, internalName);
+    }
+
+    /**
+     * @param internalName The internal name of an interface
+     * @return The index of the interface, or -1 if the interface is not part of this model
+     */
+    public int findInterface(String internalName) {
+        return find(interfaceTable, interfaceNames, internalName);
+    }
+
+    public int targetCount() {
+        return targetNames.length;
+    }
+
+    public String targetName(int target) {
+        return strings[targetNames[target]];
+    }
+
+    public int targetInterfaceCount(int target) {
+        return targetInterfaceStart[target + 1] - targetInterfaceStart[target];
+    }
+
+    /**
+     * @return The interface index of the i-th interface applied to the target
+     */
+    public int targetInterface(int target, int i) {
+        return targetInterfaces[targetInterfaceStart[target] + i];
+    }
+
+    public int interfaceCount() {
+        return interfaceNames.length;
+    }
+
+    /**
+     * @return The internal name of the interface
+     */
+    public String interfaceName(int itf) {
+        return strings[interfaceNames[itf]];
+    }
+
+    public int interfaceSuperCount(int itf) {
+        return interfaceSuperStart[itf + 1] - interfaceSuperStart[itf];
+    }
+
+    /**
+     * @return The internal name of the i-th direct super-interface of the interface
+     */
+    public String interfaceSuper(int itf, int i) {
+        return strings[interfaceSupers[interfaceSuperStart[itf] + i]];
+    }
+
+    /**
+     * @return The index of the first method declared by the interface
+     */
+    public int interfaceMethodStart(int itf) {
+        return interfaceMethodStart[itf];
+    }
+
+    /**
+     * @return One past the index of the last method declared by the interface
+     */
+    public int interfaceMethodEnd(int itf) {
+        return interfaceMethodStart[itf + 1];
+    }
+
+    public String methodName(int method) {
+        return strings[methodNames[method]];
+    }
+
+    public String methodDescriptor(int method) {
+        return strings[methodDescriptors[method]];
+    }
+
+    @Nullable
+    public String methodSignature(int method) {
+        int signature = methodSignatures[method];
+        return signature == NONE ? null : strings[signature];
+    }
+
+    /**
+     * @return The number of parameter names of the method, or -1 if they are unavailable
+     */
+    public int methodParameterCount(int method) {
+        return methodParameterCount[method];
+    }
+
+    public String methodParameterName(int method, int i) {
+        return strings[parameterNames[methodParameterStart[method] + i]];
+    }
+
+    public int methodExceptionCount(int method) {
+        return methodExceptionCount[method];
+    }
+
+    public String methodException(int method, int i) {
+        return strings[exceptions[methodExceptionStart[method] + i]];
+    }
+
+    /**
+     * Hashes the canonical form of this model: every (target, interface, method) tuple, in sorted order and
+     * independent of string table layout and insertion order. Two models with the same fingerprint stir a jar
+     * identically.
+     *
+     * @return The SHA-256 of the canonical model, as a hex string
+     */
+    public String fingerprint() {
+        MessageDigest digest = Hashing.newDigest();
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            Integer[] targets = sortedIndices(targetNames.length, this::targetName);
+            out.writeInt(targets.length);
+            for (int target : targets) {
+                out.writeUTF(targetName(target));
+                Integer[] interfaces = sortedIndices(targetInterfaceCount(target), i -> interfaceName(targetInterface(target, i)));
+                out.writeInt(interfaces.length);
+                for (int i : interfaces) {
+                    writeCanonicalInterface(out, targetInterface(target, i));
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Hashing.toHex(digest.digest());
+    }
+
+    private void writeCanonicalInterface(DataOutputStream out, int itf) throws IOException {
+        out.writeUTF(interfaceName(itf));
+
+        Integer[] supers = sortedIndices(interfaceSuperCount(itf), i -> interfaceSuper(itf, i));
+        out.writeInt(supers.length);
+        for (int i : supers) {
+            out.writeUTF(interfaceSuper(itf, i));
+        }
+
+        int start = interfaceMethodStart(itf);
+        Integer[] methods = sortedIndices(interfaceMethodEnd(itf) - start, i -> methodName(start + i) + methodDescriptor(start + i));
+        out.writeInt(methods.length);
+        for (int i : methods) {
+            int method = start + i;
+            out.writeUTF(methodName(method));
+            out.writeUTF(methodDescriptor(method));
+            String signature = methodSignature(method);
+            out.writeUTF(signature == null ? "" : signature);
+            out.writeInt(methodParameterCount(method));
+            for (int p = 0; p < methodParameterCount(method); p++) {
+                out.writeUTF(methodParameterName(method, p));
+            }
+            out.writeInt(methodExceptionCount(method));
+            for (int e = 0; e < methodExceptionCount(method); e++) {
+                out.writeUTF(methodException(method, e));
+            }
+        }
+    }
+
+    private static Integer[] sortedIndices(int count, IntFunction<String> keyFunction) {
+        Integer[] indices = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, Comparator.comparing(keyFunction::apply));
+        return indices;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        writeInts(out, interfaceNames);
+        writeInts(out, interfaceMethodStart);
+        writeInts(out, interfaceSuperStart);
+        writeInts(out, interfaceSupers);
+        writeInts(out, methodNames);
+        writeInts(out, methodDescriptors);
+        writeInts(out, methodSignatures);
+        writeInts(out, methodParameterStart);
+        writeInts(out, methodParameterCount);
+        writeInts(out, methodExceptionStart);
+        writeInts(out, methodExceptionCount);
+        writeInts(out, parameterNames);
+        writeInts(out, exceptions);
+        writeInts(out, targetNames);
+        writeInts(out, targetInterfaceStart);
+        writeInts(out, targetInterfaces);
+    }
+
+    public static MixinModel read(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported mixin model format version " + version);
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return new MixinModel(strings, readInts(in), readInts(in), readInts(in), readInts(in),
+            readInts(in), readInts(in), readInts(in),
+            readInts(in), readInts(in), readInts(in), readInts(in),
+            readInts(in), readInts(in),
+            readInts(in), readInts(in), readInts(in));
+    }
+
+    private static void writeInts(DataOutput out, int[] ints) throws IOException {
+        out.writeInt(ints.length);
+        for (int i : ints) {
+            out.writeInt(i);
+        }
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        int[] ints = new int[in.readInt()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = in.readInt();
+        }
+        return ints;
+    }
+
+    public static class Builder {
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private final Map<String, Set<MethodEntry>> methodsByInterface = new LinkedHashMap<>();
+        private final Map<String, Set<String>> superInterfacesByInterface = new HashMap<>();
+        private final Map<String, Set<String>> interfacesByTarget = new LinkedHashMap<>();
+
+        /**
+         * Adds a method declared by an interface. Methods with the same name and descriptor are only added once.
+         *
+         * @param interfaceName The internal name of the interface
+         */
+        public Builder addInterfaceMethod(String interfaceName, MethodEntry method) {
+            methodsByInterface.computeIfAbsent(interfaceName, i -> new LinkedHashSet<>()).add(method);
+            return this;
+        }
+
+        /**
+         * @param interfaceName The internal name of the interface
+         * @param superInterfaceName The internal name of an interface directly extended by the interface
+         */
+        public Builder addSuperInterface(String interfaceName, String superInterfaceName) {
+            methodsByInterface.computeIfAbsent(interfaceName, i -> new LinkedHashSet<>());
+            superInterfacesByInterface.computeIfAbsent(interfaceName, i -> new LinkedHashSet<>()).add(superInterfaceName);
+            return this;
+        }
+
+        /**
+         * @param targetName The internal name of the mixin target
+         * @param interfaceName The internal name of the interface to apply to the target
+         */
+        public Builder addTargetInterface(String targetName, String interfaceName) {
+            methodsByInterface.computeIfAbsent(interfaceName, i -> new LinkedHashSet<>());
+            interfacesByTarget.computeIfAbsent(targetName, t -> new LinkedHashSet<>()).add(interfaceName);
+            return this;
+        }
+
+        /**
+         * Adds every interface, method and target of another model
+         */
+        public Builder addAll(MixinModel model) {
+            for (int itf = 0; itf < model.interfaceCount(); itf++) {
+                String interfaceName = model.interfaceName(itf);
+                methodsByInterface.computeIfAbsent(interfaceName, i -> new LinkedHashSet<>());
+                for (int i = 0; i < model.interfaceSuperCount(itf); i++) {
+                    addSuperInterface(interfaceName, model.interfaceSuper(itf, i));
+                }
+                for (int method = model.interfaceMethodStart(itf), end = model.interfaceMethodEnd(itf); method < end; method++) {
+                    List<String> parameterNames = null;
+                    if (model.methodParameterCount(method) != NONE) {
+                        parameterNames = new ArrayList<>(model.methodParameterCount(method));
+                        for (int i = 0; i < model.methodParameterCount(method); i++) {
+                            parameterNames.add(model.methodParameterName(method, i));
+                        }
+                    }
+                    List<String> exceptions = new ArrayList<>(model.methodExceptionCount(method));
+                    for (int i = 0; i < model.methodExceptionCount(method); i++) {
+                        exceptions.add(model.methodException(method, i));
+                    }
+                    addInterfaceMethod(interfaceName, new MethodEntry(model.methodName(method), model.methodDescriptor(method),
+                        model.methodSignature(method), parameterNames, exceptions));
+                }
+            }
+            for (int target = 0; target < model.targetCount(); target++) {
+                for (int i = 0; i < model.targetInterfaceCount(target); i++) {
+                    addTargetInterface(model.targetName(target), model.interfaceName(model.targetInterface(target, i)));
+                }
+            }
+            return this;
+        }
+
+        private int intern(@Nullable String string) {
+            if (string == null) {
+                return NONE;
+            }
+            return stringIndices.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        public MixinModel build() {
+            Map<String, Integer> interfaceIndices = new HashMap<>();
+            int[] interfaceNames = new int[methodsByInterface.size()];
+            int[] interfaceMethodStart = new int[methodsByInterface.size() + 1];
+            int[] interfaceSuperStart = new int[methodsByInterface.size() + 1];
+            IntList interfaceSupers = new IntList();
+
+            int methodCount = methodsByInterface.values().stream().mapToInt(Set::size).sum();
+            int[] methodNames = new int[methodCount];
+            int[] methodDescriptors = new int[methodCount];
+            int[] methodSignatures = new int[methodCount];
+            int[] methodParameterStart = new int[methodCount];
+            int[] methodParameterCount = new int[methodCount];
+            int[] methodExceptionStart = new int[methodCount];
+            int[] methodExceptionCount = new int[methodCount];
+            IntList parameterNames = new IntList();
+            IntList exceptions = new IntList();
+
+            int itf = 0;
+            int method = 0;
+            for (Map.Entry<String, Set<MethodEntry>> entry : methodsByInterface.entrySet()) {
+                interfaceIndices.put(entry.getKey(), itf);
+                interfaceNames[itf] = intern(entry.getKey());
+                interfaceMethodStart[itf] = method;
+                interfaceSuperStart[itf] = interfaceSupers.size;
+                superInterfacesByInterface.getOrDefault(entry.getKey(), Collections.emptySet())
+                    .forEach(superInterface -> interfaceSupers.add(intern(superInterface)));
+                for (MethodEntry methodEntry : entry.getValue()) {
+                    methodNames[method] = intern(methodEntry.name);
+                    methodDescriptors[method] = intern(methodEntry.descriptor);
+                    methodSignatures[method] = intern(methodEntry.signature);
+
+                    methodParameterStart[method] = parameterNames.size;
+                    if (methodEntry.parameterNames == null) {
+                        methodParameterCount[method] = NONE;
+                    } else {
+                        methodParameterCount[method] = methodEntry.parameterNames.size();
+                        methodEntry.parameterNames.forEach(name -> parameterNames.add(intern(name)));
+                    }
+
+                    methodExceptionStart[method] = exceptions.size;
+                    methodExceptionCount[method] = methodEntry.exceptions.size();
+                    methodEntry.exceptions.forEach(exception -> exceptions.add(intern(exception)));
+                    method++;
+                }
+                itf++;
+            }
+            interfaceMethodStart[itf] = method;
+            interfaceSuperStart[itf] = interfaceSupers.size;
+
+            int[] targetNames = new int[interfacesByTarget.size()];
+            int[] targetInterfaceStart = new int[interfacesByTarget.size() + 1];
+            IntList targetInterfaces = new IntList();
+            int target = 0;
+            for (Map.Entry<String, Set<String>> entry : interfacesByTarget.entrySet()) {
+                targetNames[target] = intern(entry.getKey());
+                targetInterfaceStart[target] = targetInterfaces.size;
+                entry.getValue().forEach(interfaceName -> targetInterfaces.add(interfaceIndices.get(interfaceName)));
+                target++;
+            }
+            targetInterfaceStart[target] = targetInterfaces.size;
+
+            return new MixinModel(strings.toArray(new String[0]), interfaceNames, interfaceMethodStart, interfaceSuperStart, interfaceSupers.toArray(),
+                methodNames, methodDescriptors, methodSignatures,
+                methodParameterStart, methodParameterCount, methodExceptionStart, methodExceptionCount,
+                parameterNames.toArray(), exceptions.toArray(),
+                targetNames, targetInterfaceStart, targetInterfaces.toArray());
+        }
+    }
+
+    private static final class IntList {
+        private int[] ints = new int[16];
+        private int size;
+
+        void add(int i) {
+            if (size == ints.length) {
+                ints = Arrays.copyOf(ints, size * 2);
+            }
+            ints[size++] = i;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ints, size);
+        }
+    }
+}
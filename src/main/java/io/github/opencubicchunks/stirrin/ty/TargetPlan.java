@@ -0,0 +1,26 @@
+package io.github.opencubicchunks.stirrin.ty;
+
+import java.util.List;
+
+/**
+ * The changes to make to a single mixin target class
+ */
+public final class TargetPlan {
+    /**
+     * Internal names of the interfaces to add to the class
+     */
+    public final List<String> interfaces;
+    /**
+     * Indices of the {@link MixinModel} methods to add stubs for
+     */
+    public final int[] methods;
+
+    public TargetPlan(List<String> interfaces, int[] methods) {
+        this.interfaces = interfaces;
+        this.methods = methods;
+    }
+
+    public boolean isEmpty() {
+        return interfaces.isEmpty() && methods.length == 0;
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.opencubicchunks.stirrin.util;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Fingerprints the public ABI of a jar or class directory: the headers of its classes, and the signatures of their
+ * non-private fields and methods. Method bodies, private members, debug information and resources are ignored, in the
+ * same way as Gradle's compile classpath normalization.
+ *
+ * Each class is digested as soon as it is read, so only a digest per class is held while fingerprinting. Fingerprints of
+ * the most recently fingerprinted jars are remembered until the jar's size or modification time changes.
+ */
+public class AbiFingerprint {
+    private static final int MAX_REMEMBERED_JARS = 256;
+
+    // guarded by itself
+    private static final Map<Path, Stamped> JAR_FINGERPRINTS = new LinkedHashMap<Path, Stamped>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Path, Stamped> eldest) {
+            return size() > MAX_REMEMBERED_JARS;
+        }
+    };
+
+    public static String of(Path file) throws IOException {
+        if (Files.isDirectory(file)) {
+            return ofDirectory(file);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        Stamped stamped;
+        synchronized (JAR_FINGERPRINTS) {
+            stamped = JAR_FINGERPRINTS.get(file);
+        }
+        if (stamped == null || stamped.size != size || stamped.lastModified != lastModified) {
+            stamped = new Stamped(size, lastModified, ofJar(file));
+            synchronized (JAR_FINGERPRINTS) {
+                JAR_FINGERPRINTS.put(file, stamped);
+            }
+        }
+        return stamped.fingerprint;
+    }
+
+    private static String ofJar(Path jarFile) throws IOException {
+        SortedMap<String, byte[]> classes = new TreeMap<>();
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class")) {
+                    try (InputStream inputStream = jar.getInputStream(entry)) {
+                        addClass(classes, new ClassReader(inputStream));
+                    }
+                }
+            }
+        }
+        return combine(classes);
+    }
+
+    private static String ofDirectory(Path directory) throws IOException {
+        SortedMap<String, byte[]> classes = new TreeMap<>();
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            classFiles = files.filter(file -> file.toString().endsWith(".class")).collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            try (InputStream inputStream = Files.newInputStream(classFile)) {
+                addClass(classes, new ClassReader(inputStream));
+            }
+        }
+        return combine(classes);
+    }
+
+    private static void addClass(Map<String, byte[]> classes, ClassReader classReader) {
+        if ((classReader.getAccess() & ACC_SYNTHETIC) != 0) {
+            return;
+        }
+        List<String> members = new ArrayList<>();
+        String[] header = new String[1];
+        classReader.accept(new ClassVisitor(ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                header[0] = access + " " + name + " " + signature + " " + superName + " " + Arrays.toString(interfaces);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if ((access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                    members.add("F " + access + " " + name + " " + descriptor + " " + signature + " " + value);
+                }
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if ((access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                    members.add("M " + access + " " + name + " " + descriptor + " " + signature + " " + Arrays.toString(exceptions));
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        members.sort(Comparator.naturalOrder());
+        String abi = header[0] + "\n" + String.join("\n", members);
+        classes.put(classReader.getClassName(), Hashing.hash(abi.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String combine(SortedMap<String, byte[]> classes) {
+        MessageDigest digest = Hashing.newDigest();
+        classes.values().forEach(digest::update);
+        return Hashing.toHex(digest.digest());
+    }
+
+    private static final class Stamped {
+        final long size;
+        final long lastModified;
+        final String fingerprint;
+
+        Stamped(long size, long lastModified, String fingerprint) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
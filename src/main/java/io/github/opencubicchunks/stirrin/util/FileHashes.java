@@ -0,0 +1,28 @@
+package io.github.opencubicchunks.stirrin.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the content hash of every file hashed during a single transform run, so files which are inputs of both the
+ * {@link io.github.opencubicchunks.stirrin.RerunDiagnostics rerun diagnostics} and the stored mixin model key are only
+ * read once. Must not outlive the run, as files aren't re-read when they change.
+ */
+public final class FileHashes {
+    private final Map<Path, byte[]> hashes = new HashMap<>();
+
+    /**
+     * @return The {@link Hashing#hashFile hash} of the file
+     */
+    public synchronized byte[] hash(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        byte[] hash = hashes.get(absolute);
+        if (hash == null) {
+            hash = Hashing.hashFile(absolute);
+            hashes.put(absolute, hash);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.opencubicchunks.stirrin.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class Hashing {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    public static byte[] hash(byte[] bytes) {
+        return newDigest().digest(bytes);
+    }
+
+    public static byte[] hashFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buf)) > 0) {
+                digest.update(buf, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
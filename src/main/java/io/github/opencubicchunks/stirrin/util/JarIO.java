@@ -1,124 +1,109 @@
 package io.github.opencubicchunks.stirrin.util;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.tree.ClassNode;
-
+import javax.annotation.Nullable;
 import java.io.*;
 import java.nio.file.Files;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Enumeration;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
-import static org.objectweb.asm.Opcodes.ASM9;
-
 public class JarIO {
     /**
-     * Loads all class entries from a jar outputJar
+     * Copies every entry of the input jar to the output jar, passing the bytes of each class entry through the
+     * supplied transformer.
+     *
+     * Entries are streamed one at a time, so only a single entry of the jar is held in memory. If a {@link MemoryBudget}
+     * is supplied, the size of each entry is acquired from it before the entry is read, and released once the entry
+     * has been written.
      */
-    public static List<ClassNode> loadClasses(File jarFile) throws IOException {
-        try (JarFile jar = new JarFile(jarFile); Stream<JarEntry> str = jar.stream()) {
-            return str.map(z -> readJarClasses(jar, z)).filter(Optional::isPresent).map(Optional::get)
-                    .map(JarIO::classNodeFromBytes)
-                    .collect(Collectors.toList());
-        }
-    }
+    public static void transformJar(File inputJar, File outputJar, @Nullable MemoryBudget budget, UnaryOperator<byte[]> classTransformer) {
+        try (JarFile jar = new JarFile(inputJar);
+             JarOutputStream outputStream = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(outputJar.toPath())))) {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
 
-    private static ClassNode classNodeFromBytes(byte[] bytes) {
-        ClassReader reader = new ClassReader(bytes);
-        ClassNode classNode = new ClassNode(ASM9);
-        reader.accept(classNode, 0);
-        return classNode;
-    }
+                readBudgeted(jar, entry, budget, bytes -> {
+                    if (name.endsWith(".class")) {
+                        bytes = classTransformer.apply(bytes);
+                    }
 
-    private static Optional<byte[]> readJarClasses(JarFile jar, JarEntry entry) {
-        String name = entry.getName();
-        try (InputStream inputStream = jar.getInputStream(entry)){
-            if (name.endsWith(".class")) {
-                return readClassFile(inputStream);
+                    outputStream.putNextEntry(new ZipEntry(name));
+                    outputStream.write(bytes);
+                    outputStream.closeEntry();
+                });
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for memory budget", e);
         }
-        return Optional.empty();
-    }
-
-    private static Optional<byte[]> readClassFile(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream output = new ByteArrayOutputStream(inputStream.available());
-        byte[] buf = new byte[4096];
-        int read;
-        while ((read = inputStream.read(buf)) > 0) {
-            output.write(buf, 0, read);
-        }
-        byte[] bytes = output.toByteArray();
-        return Optional.of(bytes);
     }
 
     /**
-     * Takes a list of class nodes and writes them to the output outputJar
+     * Passes the bytes of every class entry of the jar to the supplied consumer, one entry at a time
      *
-     * All non-class entries from the specified input jar are also written to the output jar
+     * @param cancelled Checked before each entry, stops reading the jar once it returns true
      */
-    public static void saveAsJar(List<ClassNode> classNodes, File inputJar, File outputJar) {
-        try (JarOutputStream outputStream = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(outputJar.toPath())))) {
-            Map<String, byte[]> nonClassEntries = loadNonClasses(inputJar);
-
-            // write all non-class entries from the input jar
-            for (Map.Entry<String, byte[]> e : nonClassEntries.entrySet()) {
-                outputStream.putNextEntry(new ZipEntry(e.getKey()));
-                outputStream.write(e.getValue());
-                outputStream.closeEntry();
-            }
-
-            // write all class nodes
-            for (ClassNode classNode : classNodes) {
-                ClassWriter writer = new ClassWriter(0);
-                classNode.accept(writer);
-                byte[] bytes = writer.toByteArray();
+    public static void forEachClass(File inputJar, @Nullable MemoryBudget budget, BooleanSupplier cancelled, Consumer<byte[]> classConsumer) {
+        try (JarFile jar = new JarFile(inputJar)) {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements() && !cancelled.getAsBoolean(); ) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
 
-                outputStream.putNextEntry(new ZipEntry(classNode.name + ".class"));
-                outputStream.write(bytes);
-                outputStream.closeEntry();
+                readBudgeted(jar, entry, budget, classConsumer::accept);
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for memory budget", e);
         }
     }
 
     /**
-     * Loads all NON-class entries from a jar outputJar
+     * Reads the entry and passes its bytes to the consumer, holding the size of the entry from the budget until the
+     * consumer returns. Entries of unknown size acquire from the budget once they have been read.
      */
-    private static void readNonJars(JarFile jar, JarEntry entry, Map<String, byte[]> nonClasses) {
-        String name = entry.getName();
-        try (InputStream inputStream = jar.getInputStream(entry)){
-            if (!name.endsWith(".class")) {
-                ByteArrayOutputStream output = new ByteArrayOutputStream(inputStream.available());
-                byte[] buf = new byte[4096];
-                int read;
-                while ((read = inputStream.read(buf)) > 0) {
-                    output.write(buf, 0, read);
-                }
-                byte[] bytes = output.toByteArray();
-                nonClasses.put(name, bytes);
+    public static void readBudgeted(JarFile jar, JarEntry entry, @Nullable MemoryBudget budget, EntryConsumer consumer)
+        throws IOException, InterruptedException {
+        long size = entry.getSize();
+        long acquired = budget != null && size >= 0 ? budget.acquire(size) : 0;
+        try {
+            byte[] bytes = readEntry(jar, entry);
+            if (budget != null && size < 0) { // size is unknown until the entry has been read
+                acquired = budget.acquire(bytes.length);
+            }
+            consumer.accept(bytes);
+        } finally {
+            if (budget != null) {
+                budget.release(acquired);
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
         }
     }
 
-    private static Map<String, byte[]> loadNonClasses(File jarFile) throws IOException {
-        Map<String, byte[]> classes = new HashMap<>();
-        JarFile jar = new JarFile(jarFile);
-        Stream<JarEntry> str = jar.stream();
-        str.forEach(z -> readNonJars(jar, z, classes));
-        jar.close();
-        return classes;
+    public interface EntryConsumer {
+        void accept(byte[] bytes) throws IOException;
+    }
+
+    private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+        try (InputStream inputStream = jar.getInputStream(entry)) {
+            long size = entry.getSize();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(size >= 0 && size <= Integer.MAX_VALUE ? (int) size : 4096);
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buf)) > 0) {
+                output.write(buf, 0, read);
+            }
+            return output.toByteArray();
+        }
     }
 }
@@ -0,0 +1,82 @@
+package io.github.opencubicchunks.stirrin.util;
+
+/**
+ * A counting limit on the number of bytes held in memory at once. Callers {@link #acquire(long)} before reading
+ * data and {@link #release(long)} once it has been written out again, blocking while the cap is exhausted.
+ *
+ * Transforms use a single budget shared by the whole JVM, see {@link #shared(long)}, so the cap holds regardless of how
+ * many artifact transforms Gradle runs concurrently, or for how many builds and projects.
+ */
+public final class MemoryBudget {
+    private static MemoryBudget shared; // guarded by MemoryBudget.class
+
+    // guarded by this
+    private long capacity;
+    private long available;
+
+    /**
+     * Creates a budget private to the caller
+     */
+    public MemoryBudget(long capacity) {
+        checkCapacity(capacity);
+        this.capacity = capacity;
+        this.available = capacity;
+    }
+
+    /**
+     * Every caller gets the same budget, resized to the capacity it requests. When builds or projects running in the same
+     * JVM configure different capacities, the most recently requested one applies to all of them.
+     *
+     * @param capacity The maximum number of in-flight bytes
+     * @return The JVM-wide budget
+     */
+    public static synchronized MemoryBudget shared(long capacity) {
+        if (shared == null) {
+            shared = new MemoryBudget(capacity);
+        } else {
+            shared.resize(capacity);
+        }
+        return shared;
+    }
+
+    /**
+     * Changes the capacity. Bytes already acquired stay acquired, so the budget may be over its new capacity until they
+     * are released.
+     */
+    synchronized void resize(long capacity) {
+        checkCapacity(capacity);
+        available += capacity - this.capacity;
+        this.capacity = capacity;
+        notifyAll();
+    }
+
+    private static void checkCapacity(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memory budget capacity must be positive, got " + capacity);
+        }
+    }
+
+    /**
+     * Blocks until the requested number of bytes is available. Requests larger than the whole capacity are clamped
+     * to it, so a single oversized entry waits for exclusive use of the budget instead of deadlocking.
+     *
+     * @return The number of bytes actually acquired, to be passed to {@link #release(long)}
+     */
+    public synchronized long acquire(long bytes) throws InterruptedException {
+        long amount;
+        while (available < (amount = Math.min(Math.max(bytes, 0), capacity))) { // the capacity may change while waiting
+            wait();
+        }
+        available -= amount;
+        return amount;
+    }
+
+    public synchronized void release(long bytes) {
+        available += bytes;
+        notifyAll();
+    }
+
+    public synchronized long capacity() {
+        return capacity;
+    }
+}
@@ -9,8 +9,7 @@ import javax.annotation.Nullable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
-
-import static io.github.opencubicchunks.stirrin.Stirrin.LOGGER;
+import java.util.function.Consumer;
 
 public class MethodBindingUtils {
 
@@ -27,10 +26,12 @@ public class MethodBindingUtils {
             signature.visitFormalTypeParameter(String.valueOf(param.getName()));
             ITypeBinding[] typeBounds = param.getTypeBounds();
             if (typeBounds.length > 0) { // it has bounds, use them
-                for (int i = 0, typeBoundsSize = typeBounds.length; i < typeBoundsSize; i++) {
-                    ITypeBinding bound = typeBounds[i];
-                    if (i != 0) { // visitFormalTypeParameter adds the first ':', but all subsequent bounds also need a ':' proceeding
+                for (ITypeBinding bound : typeBounds) {
+                    // visitFormalTypeParameter adds a ':', interface bounds are preceded by another one, eg: "T::Ljava/lang/Comparable<TT;>;"
+                    if (bound.isInterface()) {
                         signature.visitInterfaceBound();
+                    } else {
+                        signature.visitClassBound();
                     }
                     addSignatureOf(signature, bound);
                 }
@@ -68,8 +69,16 @@ public class MethodBindingUtils {
             signature.visitClassType(binaryNameOrThrow(paramType).replace('.', '/'));
 
             for (ITypeBinding typeArgument : paramType.getTypeArguments()) {
-                signature.visitTypeArgument('='); // '=' here denotes a non-wildcard type argument, which we add on the lines below
-                addSignatureOf(signature, typeArgument);
+                if (typeArgument.isWildcardType() && typeArgument.getBound() == null) {
+                    signature.visitTypeArgument(); // '*'
+                } else if (typeArgument.isWildcardType()) {
+                    // '+' and '-' denote upper and lower bounded wildcards, eg: "? extends T" is "+TT;"
+                    signature.visitTypeArgument(typeArgument.isUpperbound() ? '+' : '-');
+                    addSignatureOf(signature, typeArgument.getBound());
+                } else {
+                    signature.visitTypeArgument('='); // '=' here denotes a non-wildcard type argument, which we add on the lines below
+                    addSignatureOf(signature, typeArgument);
+                }
             }
             signature.visitEnd();
         } else if (paramType.isArray()) {
@@ -102,8 +111,10 @@ public class MethodBindingUtils {
     }
 
     private static void addDescriptorOf(SignatureWriter signature, ITypeBinding paramType) throws ClassNotFoundException {
-        if (paramType.isGenericType() || paramType.isTypeVariable()) {
-            signature.visitClassType(Object.class.getName().replace('.', '/'));
+        if (paramType.isTypeVariable()) { // erased to its leftmost bound, as javac does
+            addDescriptorOf(signature, paramType.getErasure());
+        } else if (paramType.isGenericType()) {
+            signature.visitClassType(binaryNameOrThrow(paramType).replace('.', '/'));
             signature.visitEnd();
         } else if (paramType.isWildcardType()) {
             signature.visitTypeArgument();
@@ -125,6 +136,25 @@ public class MethodBindingUtils {
         }
     }
 
+    /**
+     * Exceptions only affect the stub's throws clause, which the JVM doesn't check, so an exception type which can't be
+     * resolved is left out rather than failing the whole method
+     *
+     * @param unresolvedReporter Receives the name of each exception type which can't be resolved
+     * @return The internal names of the exceptions declared by the method
+     */
+    public static List<String> createExceptions(IMethodBinding method, Consumer<String> unresolvedReporter) {
+        List<String> exceptions = new ArrayList<>();
+        for (ITypeBinding exception : method.getExceptionTypes()) {
+            try {
+                exceptions.add(binaryNameOrThrow(exception.getErasure()).replace('.', '/'));
+            } catch (ClassNotFoundException e) {
+                unresolvedReporter.accept(exception.getName());
+            }
+        }
+        return exceptions;
+    }
+
     private static String binaryNameOrThrow(ITypeBinding type) throws ClassNotFoundException {
         String binaryName = type.getBinaryName();
         if (binaryName == null || type.toString().contains("[MISSING:")) { // TODO: remove this jank
@@ -142,11 +172,18 @@ public class MethodBindingUtils {
             field.setAccessible(true);
         } catch (NoSuchFieldException | ClassNotFoundException ignored) {
             field = null;
-            LOGGER.error("Failed to find binding field, parameter names will be unavailable");
         }
         BINDING_FIELD = field;
     }
 
+    /**
+     * @return The error to report if parameter names can't be read from method bindings, or null if they can
+     */
+    @Nullable
+    public static String parameterNamesError() {
+        return BINDING_FIELD == null ? "Failed to find binding field, parameter names will be unavailable" : null;
+    }
+
     @Nullable
     public static List<String> getParamNames(IMethodBinding method) {
         // TODO: figure out how to do this without reflection
@@ -0,0 +1,182 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.MethodBindingUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledInterfacesTest {
+    private static final String INTERFACE = String.join("\n",
+        "package a;",
+        "import java.io.IOException;",
+        "import java.util.List;",
+        "import java.util.Map;",
+        "public interface Itf {",
+        "    void plain(int count, String name);",
+        "    <N extends Number> N max(List<? extends N> values, N fallback) throws IOException;",
+        "    <C extends Comparable<C>> C[] sort(C[] values, int[][] indices);",
+        "    <T> T any(T value);",
+        "    Map<String, List<Integer>> group(long key) throws IOException, InterruptedException;",
+        "}");
+
+    @TempDir Path temp;
+
+    @Test
+    void bothExtractionPathsProduceTheSameModel() throws IOException {
+        Path sources = writeSources(INTERFACE);
+        Path classes = compile(sources, "-parameters");
+        Path mixin = sources.resolve("a/TargetMixin.java");
+        Set<String> mixinClasses = Collections.singleton("a.TargetMixin");
+
+        assertNotNull(new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources)).readMethods("a/Itf"));
+
+        MixinFragment fromSource = MixinExtractor.extractEach(new Parser(Collections.emptySet(), Collections.singleton(sources)), null,
+            Collections.singleton(mixin), mixinClasses).get(mixin.toAbsolutePath());
+        MixinFragment fromClasses = MixinExtractor.extractEach(new Parser(Collections.emptySet(), Collections.singleton(sources)),
+            new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources)), Collections.singleton(mixin), mixinClasses)
+            .get(mixin.toAbsolutePath());
+
+        assertEquals(Collections.emptyList(), fromSource.errors);
+        assertEquals(Collections.emptyList(), fromClasses.errors);
+        assertEquals(describe(fromSource.model, "a/Itf"), describe(fromClasses.model, "a/Itf"));
+    }
+
+    @Test
+    void unresolvedExceptionsAreLeftOutOfTheMethod() throws IOException {
+        Path sources = writeSources("package a; public interface Itf { void risky(int count) throws missing.GoneException; }");
+        Path mixin = sources.resolve("a/TargetMixin.java");
+
+        MixinFragment fragment = MixinExtractor.extractEach(new Parser(Collections.emptySet(), Collections.singleton(sources)), null,
+            Collections.singleton(mixin), Collections.singleton("a.TargetMixin")).get(mixin.toAbsolutePath());
+
+        assertEquals(Collections.singletonList("risky (I)V (I)V [count] throws []"), describe(fragment.model, "a/Itf"));
+        assertEquals(1, fragment.errors.size());
+        assertTrue(fragment.errors.get(0).contains("GoneException"), fragment.errors.get(0));
+    }
+
+    @Test
+    void readsUpToDateInterfaces() throws IOException {
+        Path sources = writeSources(INTERFACE);
+        Path classes = compile(sources, "-parameters");
+
+        List<MethodEntry> methods = new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources)).readMethods("a/Itf");
+
+        assertNotNull(methods);
+        MethodEntry max = methods.stream().filter(method -> method.name.equals("max")).findFirst().orElseThrow(AssertionError::new);
+        assertEquals("(Ljava/util/List;Ljava/lang/Number;)Ljava/lang/Number;", max.descriptor);
+        assertIterableEquals(Arrays.asList("values", "fallback"), max.parameterNames);
+        assertIterableEquals(Collections.singletonList("java/io/IOException"), max.exceptions);
+    }
+
+    @Test
+    void ignoresClassesOlderThanTheirSource() throws IOException {
+        Path sources = writeSources(INTERFACE);
+        Path classes = compile(sources, "-parameters");
+        CompiledInterfaces compiledInterfaces = new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources));
+
+        Files.setLastModifiedTime(sources.resolve("a/Itf.java"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        assertNull(compiledInterfaces.readMethods("a/Itf"));
+    }
+
+    @Test
+    void ignoresClassesWithoutParameterNames() throws IOException {
+        Path sources = writeSources(INTERFACE);
+        Path classes = compile(sources);
+
+        List<MethodEntry> methods = new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources)).readMethods("a/Itf");
+
+        if (MethodBindingUtils.parameterNamesError() == null) { // JDT would provide the names
+            assertNull(methods);
+        } else {
+            assertNotNull(methods);
+            assertTrue(methods.stream().allMatch(method -> method.parameterNames == null));
+        }
+    }
+
+    @Test
+    void onlyReadsInterfacesDeclaredInTheSourceSets() throws IOException {
+        Path sources = writeSources("package a; public interface Itf { interface Nested { void run(); } }");
+        Path classes = compile(sources, "-parameters");
+        CompiledInterfaces compiledInterfaces = new CompiledInterfaces(Collections.singleton(classes), Collections.singleton(sources));
+
+        assertNotNull(compiledInterfaces.readMethods("a/Itf$Nested"));
+        assertNull(compiledInterfaces.readMethods("a/Target"), "not an interface");
+        assertNull(compiledInterfaces.readMethods("a/Missing"));
+
+        Files.delete(sources.resolve("a/Itf.java"));
+        assertNull(compiledInterfaces.readMethods("a/Itf"), "no longer declared in the source sets");
+    }
+
+    /**
+     * @return Every method of the interface, one line each, ordered by name
+     */
+    private static List<String> describe(MixinModel model, String interfaceName) {
+        int itf = model.findInterface(interfaceName);
+        assertTrue(itf >= 0, interfaceName + " is in the model");
+        List<String> methods = new ArrayList<>();
+        for (int method = model.interfaceMethodStart(itf); method < model.interfaceMethodEnd(itf); method++) {
+            List<String> parameterNames = new ArrayList<>();
+            for (int i = 0; i < model.methodParameterCount(method); i++) {
+                parameterNames.add(model.methodParameterName(method, i));
+            }
+            List<String> exceptions = new ArrayList<>();
+            for (int i = 0; i < model.methodExceptionCount(method); i++) {
+                exceptions.add(model.methodException(method, i));
+            }
+            methods.add(model.methodName(method) + " " + model.methodDescriptor(method) + " " + model.methodSignature(method) + " "
+                + parameterNames + " throws " + exceptions);
+        }
+        methods.sort(Comparator.naturalOrder());
+        return methods;
+    }
+
+    private Path writeSources(String interfaceSource) throws IOException {
+        Path sources = temp.resolve("src");
+        write(sources.resolve("org/spongepowered/asm/mixin/Mixin.java"),
+            "package org.spongepowered.asm.mixin; public @interface Mixin { String[] value(); }");
+        write(sources.resolve("a/Target.java"), "package a; public class Target {}");
+        write(sources.resolve("a/TargetMixin.java"),
+            "package a; import org.spongepowered.asm.mixin.Mixin; @Mixin(\"a.Target\") public abstract class TargetMixin implements Itf {}");
+        write(sources.resolve("a/Itf.java"), interfaceSource);
+        return sources;
+    }
+
+    /**
+     * Compiles the sources, leaving the classes newer than the sources
+     */
+    private Path compile(Path sources, String... options) throws IOException {
+        Path classes = Files.createDirectories(temp.resolve("classes"));
+        List<String> files;
+        try (Stream<Path> walk = Files.walk(sources)) {
+            files = walk.filter(Files::isRegularFile).map(Path::toString).collect(Collectors.toList());
+        }
+        for (String file : files) {
+            Files.setLastModifiedTime(Path.of(file), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> arguments = new ArrayList<>(Arrays.asList(options));
+        arguments.addAll(Arrays.asList("-d", classes.toString()));
+        arguments.addAll(files);
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+        return classes;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes());
+    }
+}
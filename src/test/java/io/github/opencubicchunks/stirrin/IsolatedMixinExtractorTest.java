@@ -0,0 +1,68 @@
+package io.github.opencubicchunks.stirrin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsolatedMixinExtractorTest {
+    @TempDir Path temp;
+
+    @Test
+    void stringsLongerThan64KbAreSent() throws IOException {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, '\u00e9'); // two bytes each in UTF-8
+        String stackTrace = new String(chars);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ParserWorker.writeString(out, stackTrace);
+        ParserWorker.writeStrings(out, Arrays.asList("a", stackTrace));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(stackTrace, ParserWorker.readString(in));
+        Set<String> strings = ParserWorker.readStrings(in);
+        assertIterableEquals(Arrays.asList("a", stackTrace), strings);
+    }
+
+    @Test
+    void unresponsiveWorkerIsKilled() throws IOException {
+        IsolatedMixinExtractor.Worker worker = new IsolatedMixinExtractor.Worker(javaCommand("Thread.sleep(60_000);"));
+
+        IOException exception = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+            assertThrows(IOException.class, () -> worker.exchange(500, (requests, responses) -> responses.readByte())));
+
+        assertTrue(exception.getMessage().contains("did not respond"), exception.getMessage());
+        assertFalse(worker.isAlive());
+    }
+
+    @Test
+    void exitedWorkerFailsTheExchange() throws IOException {
+        IsolatedMixinExtractor.Worker worker = new IsolatedMixinExtractor.Worker(javaCommand("System.exit(3);"));
+
+        IOException exception = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+            assertThrows(IOException.class, () -> worker.exchange(60_000, (requests, responses) -> responses.readByte())));
+
+        assertTrue(exception.getMessage().contains("code 3"), exception.getMessage());
+        assertFalse(worker.isAlive());
+    }
+
+    /**
+     * @return A command running the statements in a new JVM
+     */
+    private List<String> javaCommand(String statements) throws IOException {
+        Path source = Files.write(temp.resolve("Fake.java"),
+            ("public class Fake { public static void main(String[] args) throws Exception { " + statements + " } }").getBytes());
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return Arrays.asList(java, source.toString());
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixinModelServiceTest {
+    @TempDir Path temp;
+
+    private final Map<Path, Integer> parseCounts = new HashMap<>();
+    private final Function<Set<Path>, Map<Path, MixinFragment>> extractor = files -> {
+        Map<Path, MixinFragment> fragments = new HashMap<>();
+        synchronized (parseCounts) {
+            for (Path file : files) {
+                parseCounts.merge(file, 1, Integer::sum);
+                fragments.put(file, new MixinFragment(new MixinModel.Builder().build(), Collections.emptyList()));
+            }
+        }
+        return fragments;
+    };
+
+    @Test
+    void sameServiceWhenADirectoryIsMissing() {
+        Path missingDirectory = temp.resolve("missing");
+        Set<Path> dependencies = new HashSet<>(Collections.singleton(temp.resolve("missing.jar")));
+        Set<Path> sourceSets = new HashSet<>(Arrays.asList(temp, missingDirectory));
+
+        MixinModelService first = MixinModelService.get(key(dependencies, sourceSets), sourceSets, extractor);
+        try {
+            // parsing reports missing paths, without removing them from the sets the key was created from
+            Parser parser = new Parser(dependencies, sourceSets);
+            assertEquals(2, parser.getErrors().size());
+            assertTrue(sourceSets.contains(missingDirectory));
+
+            assertSame(first, MixinModelService.get(key(dependencies, sourceSets), sourceSets, extractor));
+        } finally {
+            first.close();
+        }
+    }
+
+    @Test
+    void keyIsUnaffectedByLaterChanges() {
+        Set<Path> sourceSets = new HashSet<>(Arrays.asList(temp.resolve("a"), temp.resolve("b")));
+        List<Object> key = key(Collections.emptySet(), sourceSets);
+
+        sourceSets.remove(temp.resolve("b"));
+
+        assertEquals(key(Collections.emptySet(), new HashSet<>(Arrays.asList(temp.resolve("b"), temp.resolve("a")))), key);
+        assertThrows(UnsupportedOperationException.class, () -> key.add("option"));
+    }
+
+    @Test
+    void reparsesOnlyWhatChanged() throws IOException {
+        Path mixinA = write("a/MixinA.java", "class MixinA {}");
+        Path mixinB = write("a/MixinB.java", "class MixinB {}");
+        Path other = write("a/Other.java", "class Other {}");
+        Set<Path> mixins = new HashSet<>(Arrays.asList(mixinA, mixinB));
+        Map<Path, String> fingerprints = Collections.singletonMap(temp.resolve("dependency.jar"), "1");
+
+        MixinModelService service = MixinModelService.get(key(fingerprints.keySet(), Collections.singleton(temp)),
+            Collections.singleton(temp), extractor);
+        try {
+            service.model(mixins, fingerprints, error -> fail(error));
+            service.model(mixins, fingerprints, error -> fail(error));
+            assertParseCounts(1, 1, mixinA, mixinB);
+
+            write("a/MixinA.java", "class MixinA { void changed() {} }");
+            service.model(mixins, fingerprints, error -> fail(error));
+            assertParseCounts(2, 1, mixinA, mixinB);
+
+            // a mixin may resolve against any other source file
+            Files.write(other, "class Other { void changed() {} }".getBytes());
+            service.model(mixins, fingerprints, error -> fail(error));
+            assertParseCounts(3, 2, mixinA, mixinB);
+
+            service.model(mixins, Collections.singletonMap(temp.resolve("dependency.jar"), "2"), error -> fail(error));
+            assertParseCounts(4, 3, mixinA, mixinB);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void changedMixinsAreParsedInTheBackground() throws Exception {
+        Path mixinA = write("a/MixinA.java", "class MixinA {}");
+        Path mixinB = write("a/MixinB.java", "class MixinB {}");
+        Set<Path> mixins = new HashSet<>(Arrays.asList(mixinA, mixinB));
+        Map<Path, String> fingerprints = Collections.emptyMap();
+
+        MixinModelService service = MixinModelService.get(key(Collections.emptySet(), Collections.singleton(temp)),
+            Collections.singleton(temp), extractor);
+        try {
+            service.model(mixins, fingerprints, error -> fail(error));
+
+            // a burst of saves is parsed once it settles
+            for (int i = 0; i < 3; i++) {
+                write("a/MixinA.java", "class MixinA { int field" + i + "; }");
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (parseCount(mixinA) < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Thread.sleep(500);
+            assertParseCounts(2, 1, mixinA, mixinB);
+
+            service.model(mixins, fingerprints, error -> fail(error));
+            assertParseCounts(2, 1, mixinA, mixinB);
+        } finally {
+            service.close();
+        }
+    }
+
+    private List<Object> key(Set<Path> dependencies, Set<Path> sourceSets) {
+        return MixinModelService.key(dependencies, sourceSets, Collections.emptySet(), Collections.emptySet(), getClass().getName());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = temp.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes());
+    }
+
+    private int parseCount(Path file) {
+        synchronized (parseCounts) {
+            return parseCounts.getOrDefault(file, 0);
+        }
+    }
+
+    private void assertParseCounts(int expectedA, int expectedB, Path mixinA, Path mixinB) {
+        assertEquals(expectedA, parseCount(mixinA), "parses of " + mixinA.getFileName());
+        assertEquals(expectedB, parseCount(mixinB), "parses of " + mixinB.getFileName());
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.FileHashes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixinModelStoreTest {
+    @TempDir Path temp;
+
+    @Test
+    void keyDependsOnEveryInput() throws IOException {
+        Path sources = write("src", "a/Mixin.java", "class Mixin {}");
+        String key = key(Collections.singletonList("dependency"), sources, "a.Mixin");
+
+        assertEquals(key, key(Collections.singletonList("dependency"), sources, "a.Mixin"));
+        assertNotEquals(key, key(Collections.singletonList("changed"), sources, "a.Mixin"), "dependency fingerprint");
+        assertNotEquals(key, key(Collections.singletonList("dependency"), sources, "a.Other"), "mixin classes");
+
+        write("src", "a/Mixin.java", "class Mixin { int field; }");
+        assertNotEquals(key, key(Collections.singletonList("dependency"), sources, "a.Mixin"), "source content");
+    }
+
+    @Test
+    void keyDependsOnSourcePathsButNotTheirLocation() throws IOException {
+        Path sources = write("src", "a/Mixin.java", "class Mixin {}");
+        Path moved = write("moved/src", "a/Mixin.java", "class Mixin {}");
+        Path renamed = write("renamed", "b/Mixin.java", "class Mixin {}");
+
+        String key = key(Collections.singletonList("dependency"), sources, "a.Mixin");
+        assertEquals(key, key(Collections.singletonList("dependency"), moved, "a.Mixin"));
+        assertNotEquals(key, key(Collections.singletonList("dependency"), renamed, "a.Mixin"));
+    }
+
+    @Test
+    void keyIgnoresTheOrderOfInputs() throws IOException {
+        Path sources = write("src", "a/Mixin.java", "class Mixin {}");
+        Path other = write("other", "b/Other.java", "class Other {}");
+        FileHashes fileHashes = new FileHashes();
+
+        assertEquals(
+            MixinModelStore.key(Arrays.asList("first", "second"), Arrays.asList(sources, other), Arrays.asList("a.Mixin", "b.Other"), fileHashes),
+            MixinModelStore.key(Arrays.asList("second", "first"), Arrays.asList(other, sources), Arrays.asList("b.Other", "a.Mixin"), fileHashes));
+    }
+
+    @Test
+    void storedModelsAreLoadedWithTheirErrors() {
+        MixinModelStore store = new MixinModelStore(temp.resolve("cache"));
+        MixinModel model = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "a/Itf")
+            .addInterfaceMethod("a/Itf", new MethodEntry("method", "()V", "()V", Collections.emptyList(), Collections.emptyList()))
+            .build();
+
+        assertNull(store.load("key"));
+
+        store.store("key", new MixinFragment(model, Collections.singletonList("error")));
+        MixinFragment loaded = store.load("key");
+        assertNotNull(loaded);
+        assertEquals(model.fingerprint(), loaded.model.fingerprint());
+        assertEquals(Collections.singletonList("error"), loaded.errors);
+    }
+
+    private static String key(List<String> dependencyFingerprints, Path sources, String mixinClass) throws IOException {
+        return MixinModelStore.key(dependencyFingerprints, Collections.singleton(sources), Collections.singleton(mixinClass), new FileHashes());
+    }
+
+    private Path write(String directory, String file, String content) throws IOException {
+        Path sources = temp.resolve(directory);
+        Files.createDirectories(sources.resolve(file).getParent());
+        Files.write(sources.resolve(file), content.getBytes());
+        return sources;
+    }
+}
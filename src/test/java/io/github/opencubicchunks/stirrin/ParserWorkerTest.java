@@ -0,0 +1,79 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserWorkerTest {
+    private static final Path MIXIN = Paths.get("src", "a", "Mixin.java").toAbsolutePath();
+
+    @Test
+    void requestsAndResponsesRoundTrip() throws IOException {
+        MixinModel model = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "a/Itf")
+            .addInterfaceMethod("a/Itf", new MethodEntry("method", "()V", "()V", Collections.emptyList(), Collections.emptyList()))
+            .build();
+        List<Object> received = new ArrayList<>();
+
+        Map<Path, MixinFragment> fragments = exchange((dependencies, sourceSetDirectories, classesDirectories, mixinSourceFiles, mixinClasses) -> {
+            received.addAll(Arrays.asList(dependencies, sourceSetDirectories, classesDirectories, mixinSourceFiles, mixinClasses));
+            return Collections.singletonMap(MIXIN, new MixinFragment(model, Collections.singletonList("error")));
+        });
+
+        assertEquals(Arrays.asList(paths("dep.jar"), paths("src"), paths("classes"), Collections.singleton(MIXIN), Collections.singleton("a.Mixin")),
+            received);
+        assertEquals(Collections.singleton(MIXIN), fragments.keySet());
+        assertEquals(Collections.singletonList("error"), fragments.get(MIXIN).errors);
+        assertEquals(model.fingerprint(), fragments.get(MIXIN).model.fingerprint());
+    }
+
+    @Test
+    void failuresAreSentWithTheirStackTrace() {
+        char[] message = new char[100_000];
+        Arrays.fill(message, 'x');
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> exchange((dependencies, sourceSetDirectories, classesDirectories,
+            mixinSourceFiles, mixinClasses) -> {
+            throw new IllegalStateException(new String(message));
+        }));
+
+        assertTrue(exception.getMessage().contains(IllegalStateException.class.getName() + ": " + new String(message)));
+        assertTrue(exception.getMessage().contains("at " + ParserWorkerTest.class.getName()));
+    }
+
+    @Test
+    void stopsWhenTheInputIsClosed() throws IOException {
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        ParserWorker.serve(new DataInputStream(new ByteArrayInputStream(new byte[0])), new DataOutputStream(responses), (a, b, c, d, e) -> {
+            throw new AssertionError("no request was sent");
+        });
+
+        assertEquals(0, responses.size());
+    }
+
+    /**
+     * Sends a request to a worker using the extractor, and reads back its response
+     */
+    private static Map<Path, MixinFragment> exchange(ParserWorker.Extractor extractor) throws IOException {
+        ByteArrayOutputStream requests = new ByteArrayOutputStream();
+        ParserWorker.writeRequest(new DataOutputStream(requests), paths("dep.jar"), paths("src"), paths("classes"), Collections.singleton(MIXIN),
+            Collections.singleton("a.Mixin"));
+
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+        ParserWorker.serve(new DataInputStream(new ByteArrayInputStream(requests.toByteArray())), new DataOutputStream(responses), extractor);
+
+        return ParserWorker.readResponse(new DataInputStream(new ByteArrayInputStream(responses.toByteArray())));
+    }
+
+    private static Set<Path> paths(String path) {
+        return Collections.singleton(Paths.get(path).toAbsolutePath());
+    }
+}
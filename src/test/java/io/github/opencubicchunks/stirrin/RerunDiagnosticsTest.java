@@ -0,0 +1,105 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.util.FileHashes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RerunDiagnosticsTest {
+    @TempDir Path temp;
+
+    @Test
+    void firstRunHasNoPreviousRun() throws IOException {
+        Path root = checkout("project");
+
+        List<String> report = run(root, "root:", "value");
+
+        assertTrue(report.contains("No previous run was recorded"), report.toString());
+    }
+
+    @Test
+    void reportsChangedEntries() throws IOException {
+        Path root = checkout("project");
+        run(root, "root:", "value");
+
+        Files.write(root.resolve("src/a/Changed.java"), "class Changed { int field; }".getBytes());
+        Files.write(root.resolve("src/a/Added.java"), "class Added {}".getBytes());
+        List<String> report = run(root, "root:", "other");
+
+        assertTrue(report.contains("source sets: 2 changed"), report.toString());
+        assertTrue(report.stream().anyMatch(line -> line.trim().startsWith("changed src/a/Changed.java (")), report.toString());
+        assertTrue(report.contains("    added src/a/Added.java"), report.toString());
+        assertTrue(report.contains("parameters: 1 changed"), report.toString());
+        assertTrue(report.contains("    changed debug (value -> other)"), report.toString());
+    }
+
+    @Test
+    void unchangedInputsAreReportedAsSuch() throws IOException {
+        Path root = checkout("project");
+        run(root, "root:", "value");
+
+        List<String> report = run(root, "root:", "value");
+
+        assertTrue(report.stream().anyMatch(line -> line.startsWith("No recorded input changed")), report.toString());
+    }
+
+    @Test
+    void movedCheckoutComparesAgainstItsPreviousRun() throws IOException {
+        run(checkout("project"), "root:", "value");
+
+        List<String> report = run(checkout("moved"), "root:", "value");
+
+        assertTrue(report.stream().anyMatch(line -> line.startsWith("No recorded input changed")), report.toString());
+    }
+
+    @Test
+    void projectsDontCompareAgainstEachOther() throws IOException {
+        run(checkout("project"), "root:", "value");
+
+        List<String> report = run(checkout("other"), "root:other", "value");
+
+        assertTrue(report.contains("No previous run was recorded"), report.toString());
+    }
+
+    @Test
+    void failedRunsAreNotRecorded() throws IOException {
+        Path root = checkout("project");
+        run(root, "root:", "value");
+
+        RerunDiagnostics failed = diagnostics(root, "root:");
+        failed.record("parameters", "debug", "failed");
+        // not reported, as the run failed
+
+        List<String> report = run(root, "root:", "value");
+        assertTrue(report.stream().anyMatch(line -> line.startsWith("No recorded input changed")), report.toString());
+    }
+
+    private Path checkout(String name) throws IOException {
+        Path root = temp.resolve(name);
+        Files.createDirectories(root.resolve("src/a"));
+        Files.write(root.resolve("src/a/Changed.java"), "class Changed {}".getBytes());
+        Files.write(root.resolve("src/a/Unchanged.java"), "class Unchanged {}".getBytes());
+        return root;
+    }
+
+    private List<String> run(Path root, String projectId, String debug) throws IOException {
+        RerunDiagnostics diagnostics = diagnostics(root, projectId);
+        diagnostics.recordFiles("source sets", Collections.singleton(root.resolve("src")), file -> true);
+        diagnostics.recordValues("mixin classes", Arrays.asList("a.Mixin", "a.OtherMixin"));
+        diagnostics.record("parameters", "debug", debug);
+        diagnostics.report(0);
+        return Files.readAllLines(root.resolve("build/reports/stirrin/artifact.jar.txt"));
+    }
+
+    private RerunDiagnostics diagnostics(Path root, String projectId) {
+        return new RerunDiagnostics(temp.resolve("cache"), root.resolve("build/reports/stirrin"), "artifact.jar", projectId, root, new FileHashes());
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.ty.TargetPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StirredClassCacheTest {
+    @TempDir Path temp;
+
+    @Test
+    void missThenHit() {
+        StirredClassCache cache = new StirredClassCache(temp, 1024);
+        String key = key(new byte[] { 1 }, "m/Itf");
+
+        assertNull(cache.get(key));
+        cache.put(key, new byte[] { 1, 2, 3 });
+        assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get(key));
+    }
+
+    @Test
+    void keyDependsOnClassAndPlan() {
+        assertEquals(key(new byte[] { 1 }, "m/Itf"), key(new byte[] { 1 }, "m/Itf"));
+        assertNotEquals(key(new byte[] { 1 }, "m/Itf"), key(new byte[] { 2 }, "m/Itf"));
+        assertNotEquals(key(new byte[] { 1 }, "m/Itf"), key(new byte[] { 1 }, "m/Other"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBelowBound() throws IOException {
+        StirredClassCache cache = new StirredClassCache(temp, 250);
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(new byte[] { (byte) i }, "m/Itf");
+            cache.put(keys[i], new byte[100]);
+        }
+        // keys[1] is the most recently used, then keys[0], and keys[2] the least
+        setLastUsed(cache, keys[2], 1000);
+        setLastUsed(cache, keys[0], 2000);
+        setLastUsed(cache, keys[1], 3000);
+
+        cache.evict();
+
+        // evicted to within three quarters of the bound
+        assertNotNull(cache.get(keys[1]));
+        assertNull(cache.get(keys[0]));
+        assertNull(cache.get(keys[2]));
+    }
+
+    @Test
+    void doesNotCountOrEvictFilesBeingWritten() throws IOException {
+        StirredClassCache cache = new StirredClassCache(temp, 250);
+        String key = key(new byte[] { 1 }, "m/Itf");
+        cache.put(key, new byte[100]);
+        Path inFlight = Files.write(temp.resolve("classes").resolve("in-flight.tmp"), new byte[1000]);
+
+        cache.evict();
+
+        assertTrue(Files.exists(inFlight));
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    void evictsOnceThisJvmAddedMoreThanTheBound() {
+        StirredClassCache cache = new StirredClassCache(temp, 250);
+        cache.evict(); // measures the empty cache
+
+        String first = key(new byte[] { 1 }, "m/Itf");
+        cache.put(first, new byte[200]);
+        cache.evict();
+        assertNotNull(cache.get(first), "within the bound");
+
+        cache.put(key(new byte[] { 2 }, "m/Itf"), new byte[200]);
+        cache.evict();
+        assertTrue(countEntries() <= 1);
+    }
+
+    private long countEntries() {
+        try (Stream<Path> files = Files.walk(temp.resolve("classes"))) {
+            return files.filter(Files::isRegularFile).count();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void setLastUsed(StirredClassCache cache, String key, long millis) throws IOException {
+        Path entry = temp.resolve("classes").resolve(key.substring(0, 2)).resolve(key);
+        assertTrue(Files.exists(entry));
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(millis));
+    }
+
+    private static String key(byte[] classBytes, String interfaceName) {
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Target", interfaceName)
+            .addInterfaceMethod(interfaceName, new MethodEntry("method", "()V", "()V", Collections.emptyList(), Collections.emptyList()))
+            .build();
+        TargetPlan plan = new TargetPlan(Collections.singletonList(interfaceName), new int[] { 0 });
+        return StirredClassCache.key(classBytes, mixinModel, plan);
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StirredJarStoreTest {
+    @TempDir Path temp;
+
+    @Test
+    void missThenHit() throws IOException {
+        StirredJarStore store = new StirredJarStore(temp.resolve("cache"));
+        File output = temp.resolve("output.jar").toFile();
+        String key = StirredJarStore.key(new byte[] { 1 }, model("method"));
+
+        assertFalse(store.copyTo("artifact", key, output));
+
+        store.store("artifact", key, Files.write(temp.resolve("stirred.jar"), new byte[] { 1, 2, 3 }).toFile());
+        assertTrue(store.copyTo("artifact", key, output));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(output.toPath()));
+    }
+
+    @Test
+    void keyDependsOnArtifactAndModel() {
+        assertEquals(StirredJarStore.key(new byte[] { 1 }, model("method")), StirredJarStore.key(new byte[] { 1 }, model("method")));
+        assertNotEquals(StirredJarStore.key(new byte[] { 1 }, model("method")), StirredJarStore.key(new byte[] { 2 }, model("method")));
+        assertNotEquals(StirredJarStore.key(new byte[] { 1 }, model("method")), StirredJarStore.key(new byte[] { 1 }, model("other")));
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentlyUsedJars() throws IOException {
+        StirredJarStore store = new StirredJarStore(temp.resolve("cache"));
+        File stirred = Files.write(temp.resolve("stirred.jar"), new byte[] { 1 }).toFile();
+        Path artifactDirectory = temp.resolve("cache").resolve("jars").resolve("artifact");
+
+        for (int i = 0; i < 4; i++) {
+            store.store("artifact", "key" + i, stirred);
+            Files.setLastModifiedTime(artifactDirectory.resolve("key" + i + ".jar"), FileTime.fromMillis(1000 * (i + 1)));
+        }
+        // using the oldest makes key1 the least recently used
+        assertTrue(store.copyTo("artifact", "key0", temp.resolve("output.jar").toFile()));
+
+        store.store("artifact", "key4", stirred);
+
+        File output = temp.resolve("output.jar").toFile();
+        assertFalse(store.copyTo("artifact", "key1", output));
+        for (String key : new String[] { "key0", "key2", "key3", "key4" }) {
+            assertTrue(store.copyTo("artifact", key, output), key);
+        }
+    }
+
+    @Test
+    void artifactsArePrunedSeparately() throws IOException {
+        StirredJarStore store = new StirredJarStore(temp.resolve("cache"));
+        File stirred = Files.write(temp.resolve("stirred.jar"), new byte[] { 1 }).toFile();
+
+        store.store("other", "key", stirred);
+        for (int i = 0; i < 5; i++) {
+            store.store("artifact", "key" + i, stirred);
+        }
+
+        assertTrue(store.copyTo("other", "key", temp.resolve("output.jar").toFile()));
+    }
+
+    private static MixinModel model(String methodName) {
+        return new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", new MethodEntry(methodName, "()V", "()V", Collections.emptyList(), Collections.emptyList()))
+            .build();
+    }
+}
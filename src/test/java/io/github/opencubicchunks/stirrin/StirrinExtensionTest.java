@@ -0,0 +1,84 @@
+package io.github.opencubicchunks.stirrin;
+
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StirrinExtensionTest {
+    @TempDir File projectDir;
+
+    @Test
+    void sourceSetsAreParsedAgainstTheirCompileClasspath() {
+        Project project = javaProject();
+        SourceSetContainer sourceSets = sourceSets(project);
+        SourceSet main = sourceSets.getByName("main");
+        SourceSet test = sourceSets.getByName("test");
+        SourceSet shared = sourceSets.create("shared");
+        SourceSet api = sourceSets.create("api");
+        project.getDependencies().add("implementation", "com.example:library:1.0");
+        project.getDependencies().add("apiImplementation", shared.getOutput());
+
+        assertEquals(directories(main), StirrinExtension.parseDirectories(project.getPath(), main, sourceSets));
+        assertEquals(directories(main, test), StirrinExtension.parseDirectories(project.getPath(), test, sourceSets));
+        assertEquals(directories(api, shared), StirrinExtension.parseDirectories(project.getPath(), api, sourceSets));
+    }
+
+    @Test
+    void dependingOnTheProjectItselfParsesAgainstEverySourceSet() {
+        Project project = javaProject();
+        SourceSetContainer sourceSets = sourceSets(project);
+        SourceSet fixtures = sourceSets.create("fixtures");
+        project.getDependencies().add("fixturesImplementation", project);
+
+        assertEquals(directories(sourceSets.toArray(new SourceSet[0])), StirrinExtension.parseDirectories(project.getPath(), fixtures, sourceSets));
+    }
+
+    @Test
+    void otherProjectsDontContributeSourceSets() {
+        Project root = javaProject();
+        Project child = ProjectBuilder.builder().withParent(root).withName("child").withProjectDir(new File(projectDir, "child")).build();
+        child.getPluginManager().apply("java");
+        child.getDependencies().add("implementation", root);
+        SourceSetContainer sourceSets = sourceSets(child);
+
+        SourceSet main = sourceSets.getByName("main");
+        assertEquals(directories(main), StirrinExtension.parseDirectories(child.getPath(), main, sourceSets));
+    }
+
+    @Test
+    void reportDirectoryFollowsTheBuildDirectory() {
+        Project project = javaProject();
+        StirrinTransform.Parameters parameters = project.getObjects().newInstance(StirrinTransform.Parameters.class);
+        new StirrinExtension(project, parameters);
+
+        project.getLayout().getBuildDirectory().set(new File(projectDir, "out"));
+
+        assertEquals(new File(projectDir, "out/reports/stirrin"), parameters.getReportDirectory().get().getAsFile());
+    }
+
+    private Project javaProject() {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir).build();
+        project.getPluginManager().apply("java");
+        return project;
+    }
+
+    private static SourceSetContainer sourceSets(Project project) {
+        return project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+    }
+
+    private static Set<File> directories(SourceSet... sourceSets) {
+        return Arrays.stream(sourceSets).flatMap(sourceSet -> sourceSet.getJava().getSrcDirs().stream()).collect(Collectors.toCollection(HashSet::new));
+    }
+}
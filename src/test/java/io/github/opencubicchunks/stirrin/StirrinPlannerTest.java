@@ -0,0 +1,114 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.ClassHierarchy;
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.ty.TargetPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static io.github.opencubicchunks.stirrin.TestJars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StirrinPlannerTest {
+    @TempDir Path temp;
+
+    private final TransformStats stats = new TransformStats();
+
+    @Test
+    void interfaceInheritedFromSuperclassIsNotAdded() throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/Itf", interfaceClass("a/Itf", new String[0], "itfMethod"));
+        classes.put("a/Base", abstractClass("a/Base", "java/lang/Object", new String[] { "a/Itf" }));
+        classes.put("a/Target", abstractClass("a/Target", "a/Base", new String[0]));
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "a/Itf")
+            .addInterfaceMethod("a/Itf", method("itfMethod"))
+            .build();
+
+        TargetPlan plan = plan(classes, mixinModel, "a/Target");
+
+        assertTrue(plan.isEmpty());
+        assertEquals(1, stats.interfacesAlreadyImplemented);
+        assertEquals(0, stats.methodsAlreadySatisfied, "methods of skipped interfaces aren't considered");
+    }
+
+    @Test
+    void interfaceImpliedByAnotherAddedInterfaceIsNotListed() throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/Target", abstractClass("a/Target", "java/lang/Object", new String[0]));
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Super")
+            .addTargetInterface("a/Target", "m/Sub")
+            .addSuperInterface("m/Sub", "m/Super")
+            .addInterfaceMethod("m/Super", method("superMethod"))
+            .addInterfaceMethod("m/Sub", method("subMethod"))
+            .build();
+
+        TargetPlan plan = plan(classes, mixinModel, "a/Target");
+
+        assertEquals(Collections.singletonList("m/Sub"), plan.interfaces);
+        assertEquals(new HashSet<>(Arrays.asList("superMethod", "subMethod")), methodNames(mixinModel, plan));
+        assertEquals(1, stats.interfacesImplied);
+    }
+
+    @Test
+    void methodDeclaredByTargetIsNotStubbed() throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/Target", abstractClass("a/Target", "java/lang/Object", new String[0], "clashing"));
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", method("clashing"))
+            .addInterfaceMethod("m/Itf", method("added"))
+            .build();
+
+        TargetPlan plan = plan(classes, mixinModel, "a/Target");
+
+        assertEquals(Collections.singletonList("m/Itf"), plan.interfaces);
+        assertEquals(Collections.singleton("added"), methodNames(mixinModel, plan));
+        assertEquals(1, stats.methodsClashing);
+    }
+
+    @Test
+    void stubsOfSuperclassTargetAreInherited() throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/Base", abstractClass("a/Base", "java/lang/Object", new String[0]));
+        classes.put("a/Target", abstractClass("a/Target", "a/Base", new String[0]));
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Base", "m/Itf")
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", method("itfMethod"))
+            .build();
+
+        TargetPlan plan = plan(classes, mixinModel, "a/Target");
+
+        assertTrue(plan.isEmpty());
+        assertEquals(1, stats.interfacesAlreadyImplemented);
+    }
+
+    private TargetPlan plan(Map<String, byte[]> classes, MixinModel mixinModel, String target) throws IOException {
+        File jar = writeJar(temp.resolve("input.jar").toFile(), classes);
+        try (ClassHierarchy hierarchy = ClassHierarchy.scan(jar, null, () -> false).withMixinModel(mixinModel)) {
+            StirrinPlanner planner = new StirrinPlanner(mixinModel, hierarchy, stats, false);
+            planner.prepare();
+            return planner.plan(target);
+        }
+    }
+
+    private static MethodEntry method(String name) {
+        return new MethodEntry(name, "()V", "()V", Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static Set<String> methodNames(MixinModel mixinModel, TargetPlan plan) {
+        Set<String> names = new HashSet<>();
+        for (int method : plan.methods) {
+            names.add(mixinModel.methodName(method));
+        }
+        return names;
+    }
+}
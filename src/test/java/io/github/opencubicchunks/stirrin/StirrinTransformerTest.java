@@ -0,0 +1,51 @@
+package io.github.opencubicchunks.stirrin;
+
+import io.github.opencubicchunks.stirrin.ty.MethodEntry;
+import io.github.opencubicchunks.stirrin.ty.MixinModel;
+import io.github.opencubicchunks.stirrin.util.MemoryBudget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+import static io.github.opencubicchunks.stirrin.TestJars.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StirrinTransformerTest {
+    @TempDir Path temp;
+
+    @Test
+    void targetLargerThanBudgetDoesNotDeadlock() throws IOException {
+        // the target and its superclass are each larger than the whole budget, so reading the superclass while the target
+        // is held would wait forever
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/Base", abstractClass("a/Base", "java/lang/Object", new String[] { "a/BaseItf" }, methodNames("base", 200)));
+        classes.put("a/BaseItf", interfaceClass("a/BaseItf", new String[0], "baseItf"));
+        classes.put("a/Target", abstractClass("a/Target", "a/Base", new String[0], methodNames("target", 200)));
+        File input = writeJar(temp.resolve("input.jar").toFile(), classes);
+        File output = temp.resolve("output.jar").toFile();
+
+        MixinModel mixinModel = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", new MethodEntry("mixinMethod", "()V", "()V", Collections.emptyList(), Collections.emptyList()))
+            .build();
+        MemoryBudget budget = new MemoryBudget(1024);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> StirrinTransformer.transformMinecraftJar(mixinModel,
+            StirrinTransformer.scanAsync(input, budget), input, output, budget, false, null));
+
+        try (JarFile jar = new JarFile(output); InputStream in = jar.getInputStream(jar.getJarEntry("a/Target.class"))) {
+            assertEquals(Collections.singletonList("m/Itf"), Arrays.asList(new ClassReader(in).getInterfaces()));
+        }
+    }
+}
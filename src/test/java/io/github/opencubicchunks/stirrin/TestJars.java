@@ -0,0 +1,71 @@
+package io.github.opencubicchunks.stirrin;
+
+import org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates classes and jars to run the transformer against
+ */
+final class TestJars {
+    private TestJars() {
+    }
+
+    /**
+     * @param methods Names of public abstract {@code ()V} methods to declare
+     * @return The bytes of an abstract class
+     */
+    static byte[] abstractClass(String name, String superName, String[] interfaces, String... methods) {
+        return classBytes(ACC_PUBLIC | ACC_ABSTRACT, name, superName, interfaces, methods);
+    }
+
+    /**
+     * @param methods Names of public abstract {@code ()V} methods to declare
+     * @return The bytes of an interface
+     */
+    static byte[] interfaceClass(String name, String[] interfaces, String... methods) {
+        return classBytes(ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, name, "java/lang/Object", interfaces, methods);
+    }
+
+    private static byte[] classBytes(int access, String name, String superName, String[] interfaces, String... methods) {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(V1_8, access, name, null, superName, interfaces);
+        for (String method : methods) {
+            classWriter.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, method, "()V", null, null).visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * @param classes Internal names to class bytes
+     */
+    static File writeJar(File jarFile, Map<String, byte[]> classes) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jarFile;
+    }
+
+    /**
+     * @return Names of {@code count} methods, enough to make a class larger than a small memory budget
+     */
+    static String[] methodNames(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.opencubicchunks.stirrin.ty;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixinModelTest {
+    private static final MethodEntry GENERIC = new MethodEntry("generic", "(Ljava/lang/Object;)Ljava/util/List;",
+        "<T:Ljava/lang/Object;>(TT;)Ljava/util/List<TT;>;", Collections.singletonList("value"), Collections.singletonList("java/io/IOException"));
+    private static final MethodEntry UNNAMED = new MethodEntry("unnamed", "(II)V", "(II)V", null, Collections.emptyList());
+    private static final MethodEntry PLAIN = new MethodEntry("plain", "()V", "()V", Collections.emptyList(), Collections.emptyList());
+
+    @Test
+    void roundTripPreservesModel() throws IOException {
+        MixinModel model = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Sub")
+            .addTargetInterface("a/Other", "m/Super")
+            .addSuperInterface("m/Sub", "m/Super")
+            .addInterfaceMethod("m/Sub", GENERIC)
+            .addInterfaceMethod("m/Sub", UNNAMED)
+            .addInterfaceMethod("m/Super", PLAIN)
+            .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+        MixinModel read = MixinModel.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(model.fingerprint(), read.fingerprint());
+        int target = read.findTarget("a/Target");
+        assertTrue(target >= 0);
+        assertEquals("m/Sub", read.interfaceName(read.targetInterface(target, 0)));
+        assertTrue(read.findTarget("m/Sub") < 0);
+
+        int sub = read.findInterface("m/Sub");
+        assertEquals("m/Super", read.interfaceSuper(sub, 0));
+        int generic = read.interfaceMethodStart(sub);
+        assertEquals("generic", read.methodName(generic));
+        assertEquals(GENERIC.signature, read.methodSignature(generic));
+        assertEquals(1, read.methodParameterCount(generic));
+        assertEquals("value", read.methodParameterName(generic, 0));
+        assertEquals("java/io/IOException", read.methodException(generic, 0));
+        assertEquals(-1, read.methodParameterCount(generic + 1), "missing parameter names are preserved");
+    }
+
+    @Test
+    void fingerprintIgnoresInsertionOrder() {
+        MixinModel model = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/First")
+            .addTargetInterface("a/Target", "m/Second")
+            .addInterfaceMethod("m/First", GENERIC)
+            .addInterfaceMethod("m/First", PLAIN)
+            .build();
+        MixinModel reordered = new MixinModel.Builder()
+            .addInterfaceMethod("m/First", PLAIN)
+            .addInterfaceMethod("m/First", GENERIC)
+            .addTargetInterface("a/Target", "m/Second")
+            .addTargetInterface("a/Target", "m/First")
+            .build();
+
+        assertEquals(model.fingerprint(), reordered.fingerprint());
+        assertEquals(model.fingerprint(), new MixinModel.Builder().addAll(reordered).build().fingerprint());
+    }
+
+    @Test
+    void fingerprintChangesWithModel() {
+        MixinModel model = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", PLAIN)
+            .build();
+        MixinModel renamed = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", new MethodEntry("plain", "()I", "()I", Collections.emptyList(), Collections.emptyList()))
+            .build();
+        MixinModel retargeted = new MixinModel.Builder()
+            .addTargetInterface("a/Other", "m/Itf")
+            .addInterfaceMethod("m/Itf", PLAIN)
+            .build();
+
+        assertNotEquals(model.fingerprint(), renamed.fingerprint());
+        assertNotEquals(model.fingerprint(), retargeted.fingerprint());
+    }
+
+    @Test
+    void addAllMergesModels() {
+        MixinModel first = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Itf")
+            .addInterfaceMethod("m/Itf", PLAIN)
+            .build();
+        MixinModel second = new MixinModel.Builder()
+            .addTargetInterface("a/Target", "m/Other")
+            .addInterfaceMethod("m/Itf", PLAIN)
+            .addInterfaceMethod("m/Other", UNNAMED)
+            .build();
+
+        MixinModel merged = new MixinModel.Builder().addAll(first).addAll(second).build();
+
+        int target = merged.findTarget("a/Target");
+        assertEquals(2, merged.targetInterfaceCount(target));
+        int itf = merged.findInterface("m/Itf");
+        assertEquals(1, merged.interfaceMethodEnd(itf) - merged.interfaceMethodStart(itf), "identical methods are only added once");
+        assertEquals(Arrays.asList("unnamed", "(II)V"), Arrays.asList(
+            merged.methodName(merged.interfaceMethodStart(merged.findInterface("m/Other"))),
+            merged.methodDescriptor(merged.interfaceMethodStart(merged.findInterface("m/Other")))));
+    }
+}
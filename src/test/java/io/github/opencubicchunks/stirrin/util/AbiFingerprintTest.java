@@ -0,0 +1,102 @@
+package io.github.opencubicchunks.stirrin.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+class AbiFingerprintTest {
+    @TempDir Path temp;
+
+    @Test
+    void methodBodiesDontAffectTheFingerprint() throws IOException {
+        String original = AbiFingerprint.of(jar("original.jar", classBytes("()I", 1, false)));
+        String changedBody = AbiFingerprint.of(jar("body.jar", classBytes("()I", 2, false)));
+
+        assertEquals(original, changedBody);
+    }
+
+    @Test
+    void privateMembersDontAffectTheFingerprint() throws IOException {
+        String original = AbiFingerprint.of(jar("original.jar", classBytes("()I", 1, false)));
+        String privateMethod = AbiFingerprint.of(jar("private.jar", classBytes("()I", 1, true)));
+
+        assertEquals(original, privateMethod);
+    }
+
+    @Test
+    void signaturesAffectTheFingerprint() throws IOException {
+        String original = AbiFingerprint.of(jar("original.jar", classBytes("()I", 1, false)));
+        String changedSignature = AbiFingerprint.of(jar("signature.jar", classBytes("(I)I", 1, false)));
+
+        assertNotEquals(original, changedSignature);
+    }
+
+    @Test
+    void directoriesAreFingerprintedLikeJars() throws IOException {
+        Path directory = Files.createDirectories(temp.resolve("classes").resolve("a"));
+        Files.write(directory.resolve("Api.class"), classBytes("()I", 1, false));
+        String original = AbiFingerprint.of(temp.resolve("classes"));
+
+        Files.write(directory.resolve("Api.class"), classBytes("()I", 2, false));
+        assertEquals(original, AbiFingerprint.of(temp.resolve("classes")));
+
+        Files.write(directory.resolve("Api.class"), classBytes("(I)I", 1, false));
+        assertNotEquals(original, AbiFingerprint.of(temp.resolve("classes")));
+    }
+
+    @Test
+    void rewrittenJarIsFingerprintedAgain() throws IOException {
+        Path jar = jar("api.jar", classBytes("()I", 1, false));
+        String original = AbiFingerprint.of(jar);
+
+        jar("api.jar", classBytes("(I)I", 1, false));
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 10_000));
+
+        assertNotEquals(original, AbiFingerprint.of(jar));
+    }
+
+    /**
+     * @return A class with a public method of the descriptor returning the constant, and optionally a private method
+     */
+    private static byte[] classBytes(String descriptor, int constant, boolean privateHelper) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V1_8, ACC_PUBLIC, "a/Api", null, "java/lang/Object", null);
+        MethodVisitor method = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, "get", descriptor, null, null);
+        method.visitCode();
+        method.visitLdcInsn(constant);
+        method.visitInsn(IRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        if (privateHelper) {
+            MethodVisitor helper = classWriter.visitMethod(ACC_PRIVATE | ACC_STATIC, "helper", "()V", null, null);
+            helper.visitCode();
+            helper.visitInsn(RETURN);
+            helper.visitMaxs(0, 0);
+            helper.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private Path jar(String name, byte[] classBytes) throws IOException {
+        Path jarFile = temp.resolve(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile.toFile()))) {
+            out.putNextEntry(new JarEntry("a/Api.class"));
+            out.write(classBytes);
+            out.closeEntry();
+        }
+        return jarFile;
+    }
+}
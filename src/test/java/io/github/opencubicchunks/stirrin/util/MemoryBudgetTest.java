@@ -0,0 +1,78 @@
+package io.github.opencubicchunks.stirrin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+    @Test
+    void acquireBlocksWhileCapIsExhausted() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000);
+        long held = budget.acquire(1000);
+
+        AtomicLong waiterAcquired = new AtomicLong();
+        CountDownLatch acquired = acquireInBackground(budget, 100, waiterAcquired);
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS), "acquire must wait for the cap");
+        budget.release(held);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        assertEquals(100, waiterAcquired.get());
+    }
+
+    @Test
+    void oversizedRequestIsClampedToCapacity() {
+        MemoryBudget budget = new MemoryBudget(1000);
+
+        long acquired = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> budget.acquire(1_000_000));
+
+        assertEquals(1000, acquired);
+    }
+
+    @Test
+    void waitingRequestIsClampedToShrunkCapacity() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000);
+        long held = budget.acquire(1000);
+
+        AtomicLong waiterAcquired = new AtomicLong();
+        CountDownLatch acquired = acquireInBackground(budget, 800, waiterAcquired);
+        budget.resize(500);
+        budget.release(held);
+
+        assertTrue(acquired.await(10, TimeUnit.SECONDS), "a request larger than the new capacity must not wait forever");
+        assertEquals(500, waiterAcquired.get());
+    }
+
+    @Test
+    void sharedBudgetIsResizedInsteadOfDuplicated() {
+        MemoryBudget budget = MemoryBudget.shared(1000);
+
+        assertSame(budget, MemoryBudget.shared(2000));
+        assertEquals(2000, budget.capacity());
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(0));
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(1).resize(-1));
+    }
+
+    private static CountDownLatch acquireInBackground(MemoryBudget budget, long bytes, AtomicLong acquiredOut) {
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                acquiredOut.set(budget.acquire(bytes));
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        return acquired;
+    }
+}